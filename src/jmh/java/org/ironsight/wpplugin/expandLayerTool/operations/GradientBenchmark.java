@@ -0,0 +1,51 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gradient lookups per second, straight and through a compiled {@link GradientSampler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradientBenchmark {
+    private static final int LOOKUPS = 4096;
+    @Param({"STEP", "LINEAR", "SMOOTHSTEP"})
+    Gradient.Interpolation interpolation;
+    private final Gradient gradient = new Gradient(new float[]{0.01f, 0.15f, 0.25f, 0.5f, 1f}, new float[]{1f, 0.4f,
+            0.2f, 0.1f, 0.03f});
+    private final float[] xs = new float[LOOKUPS];
+    private GradientSampler sampler;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < LOOKUPS; i++)
+            xs[i] = random.nextFloat();
+        sampler = gradient.compile(interpolation, GradientSampler.DEFAULT_RESOLUTION);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public float getValue() {
+        float sum = 0;
+        for (float x : xs)
+            sum += gradient.getValue(x, interpolation);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public float sample() {
+        float sum = 0;
+        for (float x : xs)
+            sum += sampler.sample(x);
+        return sum;
+    }
+}
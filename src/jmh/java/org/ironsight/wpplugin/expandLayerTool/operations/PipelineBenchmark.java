@@ -0,0 +1,89 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceFieldCache;
+import org.ironsight.wpplugin.expandLayerTool.pathing.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The edge pipeline of {@link EdgeExpansion}, outwards, on a {@link MaskTileSource} holding a fixture mask: scan the
+ * input layer, expand it into a distance field and spray the gradient over it. Every stage is measured on its own and
+ * all three together, without the field cache, and so is one dab of the brush.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({"16", "64", "1000"})
+    int width;
+    @Param({"false", "true"})
+    boolean multiResolution;
+    @Param({"HEIGHT", "WATER", "BLOCKS"})
+    Fixtures.Mask mask;
+    @Param({"SINGLE", "TILED", "SCALED"})
+    Fixtures.Layout layout;
+    private final EdgeExpansionOptions options = new EdgeExpansionOptions();
+    private final EdgeExpansion expansion = new EdgeExpansion(new DistanceFieldCache(0));
+    private MaskTileSource source;
+    private ArrayList<Long> inputKeys;
+    private BlockMask seeds;
+    private DistanceField field;
+    private Sprayer sprayer;
+    private int dabX, dabY;
+
+    @Setup
+    public void setup() throws IOException {
+        options.width = width;
+        options.multiResolution = multiResolution;
+        options.seed = 1;
+        source = new MaskTileSource();
+        BlockMask input = Fixtures.mask(mask, layout);
+        for (long key : input.tileKeys())
+            source.annotation(EdgeExpansion.CYAN).putTile(key, input.tileWords(key).clone());
+        inputKeys = new ArrayList<>(source.tileKeys());
+        seeds = scan();
+        field = expand();
+        sprayer = EdgeExpansion.sprayer(width, options);
+        long first = inputKeys.get(0);
+        dabX = (BlockMask.tileX(first) << 7) + 64;
+        dabY = (BlockMask.tileY(first) << 7) + 64;
+    }
+
+    @Benchmark
+    public BlockMask scan() {
+        return SeedScanner.scan(source, inputKeys, false, EdgeExpansion.CYAN, true, () -> {
+        });
+    }
+
+    @Benchmark
+    public DistanceField expand() throws IOException {
+        return EdgeExpansion.expand(seeds, width, options);
+    }
+
+    @Benchmark
+    public long[][] apply() {
+        return EdgeExpansion.apply(field, new ArrayList<>(field.tileKeys()), options.dir, sprayer, true, () -> {
+        });
+    }
+
+    @Benchmark
+    public BlockMask pipeline() throws IOException, InterruptedException {
+        return expansion.compute(source, options, new RunProgress());
+    }
+
+    /**
+     * one dab of a brush stroke with a radius of 50, including the first read of the input under it
+     */
+    @Benchmark
+    public BlockMask dab() throws IOException, InterruptedException {
+        return new BrushExpansion(source, options).dab(dabX, dabY, 50, false);
+    }
+}
@@ -0,0 +1,52 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming ring expansion with every engine, on a single thread and sharded over all cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpansionBenchmark {
+    private static final ForkJoinPool SERIAL = new ForkJoinPool(1);
+    @Param({"16", "64"})
+    int width;
+    @Param({"HEIGHT"})
+    Fixtures.Mask mask;
+    @Param({"TILED", "SCALED", "TILED_SCALED"})
+    Fixtures.Layout layout;
+    @Param({"RING_FINDER", "DISTANCE_TRANSFORM", "BIT_DILATION"})
+    RingExpansion.Engine engine;
+    private BlockMask seeds;
+
+    @Setup
+    public void setup() throws IOException {
+        seeds = Fixtures.mask(mask, layout);
+    }
+
+    @Benchmark
+    public void single(Blackhole blackhole) {
+        engine.create(seeds, new BlockMask(), width).forEachRing(width, (i, ring) -> blackhole.consume(ring));
+    }
+
+    @Benchmark
+    public void shardedSerial(Blackhole blackhole) {
+        new ShardedExpansion(seeds, new BlockMask(), engine, SERIAL, ShardedExpansion.DEFAULT_SHARD_TILES)
+                .forEachRing(width, (i, ring) -> blackhole.consume(ring));
+    }
+
+    @Benchmark
+    public void shardedParallel(Blackhole blackhole) {
+        new ShardedExpansion(seeds, new BlockMask(), engine).forEachRing(width,
+                (i, ring) -> blackhole.consume(ring));
+    }
+}
@@ -0,0 +1,111 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Synthetic input masks for the benchmarks, built from the 256x256 default_*.txt maps in the project root. Every map is
+ * one line of comma separated values per row. The directory can be changed with {@code -Dfixtures.dir=...}.
+ */
+public final class Fixtures {
+    public static final int SIZE = 256;
+    private static final HashMap<String, float[][]> loaded = new HashMap<>();
+
+    private Fixtures() {
+        // Prevent instantiation
+    }
+
+    public static synchronized float[][] load(String name) throws IOException {
+        float[][] values = loaded.get(name);
+        if (values != null) return values;
+        File file = new File(System.getProperty("fixtures.dir", "."), "default_" + name + ".txt");
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        values = new float[SIZE][SIZE];
+        int y = 0;
+        for (String line : lines) {
+            if (line.trim().isEmpty()) continue;
+            String[] cells = line.split(",");
+            for (int x = 0; x < SIZE; x++)
+                values[y][x] = Float.parseFloat(cells[x].trim());
+            y++;
+        }
+        if (y != SIZE) throw new IOException(file + " has " + y + " rows, expected " + SIZE);
+        loaded.put(name, values);
+        return values;
+    }
+
+    /**
+     * the input mask of a benchmark, laid out over the map
+     */
+    public static BlockMask mask(Mask kind, Layout layout) throws IOException {
+        float[][] height = load("heightmap"), water = load("watermap"), blocks = load("blockmap");
+        BlockMask mask = new BlockMask();
+        int size = SIZE * layout.copies * layout.scale;
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++) {
+                int fx = (x / layout.scale) % SIZE, fy = (y / layout.scale) % SIZE;
+                if (kind.contains(height[fy][fx], water[fy][fx], blocks[fy][fx])) mask.add(x, y);
+            }
+        return mask;
+    }
+
+    /**
+     * the heightmap laid out like the masks, for tiles outside of the layout there is no terrain
+     */
+    public static TerrainCost.Heights heights(Layout layout) throws IOException {
+        float[][] height = load("heightmap");
+        int size = SIZE * layout.copies * layout.scale;
+        return key -> {
+            int originX = BlockMask.tileX(key) << 7, originY = BlockMask.tileY(key) << 7;
+            if (originX < 0 || originY < 0 || originX >= size || originY >= size) return null;
+            float[] tile = new float[128 * 128];
+            for (int y = 0; y < 128; y++)
+                for (int x = 0; x < 128; x++)
+                    tile[y * 128 + x] = height[((originY + y) / layout.scale) % SIZE][((originX + x) / layout.scale) %
+                            SIZE];
+            return tile;
+        };
+    }
+
+    public enum Mask {
+        /** the upper half of the terrain, a few large blobs */
+        HEIGHT,
+        /** blocks below the water level, small lakes */
+        WATER,
+        /** non zero blocks of the blockmap. the bundled blockmap is all zero, so this measures an empty input. */
+        BLOCKS;
+
+        boolean contains(float height, float water, float block) {
+            switch (this) {
+                case HEIGHT:
+                    return height >= 74.6f;
+                case WATER:
+                    return water > height;
+                default:
+                    return block != 0;
+            }
+        }
+    }
+
+    public enum Layout {
+        /** the 256x256 map once */
+        SINGLE(1, 1),
+        /** 4x4 copies of the map, many shapes of the original size */
+        TILED(4, 1),
+        /** the map scaled up 4 times, the same shapes but 4 times as large */
+        SCALED(1, 4),
+        /** 4x4 copies of the scaled up map, 4096x4096 blocks */
+        TILED_SCALED(4, 4);
+
+        final int copies, scale;
+
+        Layout(int copies, int scale) {
+            this.copies = copies;
+            this.scale = scale;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ring expansion over the default heightmap, on a single thread and sharded over all cores. Compare with the flat
+ * engines of {@link ExpansionBenchmark} on the same mask.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeodesicBenchmark {
+    private static final ForkJoinPool SERIAL = new ForkJoinPool(1);
+    @Param({"16", "64"})
+    int width;
+    @Param({"TILED", "SCALED"})
+    Fixtures.Layout layout;
+    private BlockMask seeds;
+    private TerrainCost.Heights heights;
+
+    @Setup
+    public void setup() throws IOException {
+        seeds = Fixtures.mask(Fixtures.Mask.HEIGHT, layout);
+        heights = Fixtures.heights(layout);
+    }
+
+    // a new cost per run, so reading the heights is measured too
+    private RingExpansion.Factory engine() {
+        return GeodesicExpansion.engine(new TerrainCost(heights, 1, 3));
+    }
+
+    @Benchmark
+    public void single(Blackhole blackhole) {
+        engine().create(seeds, new BlockMask(), width).forEachRing(width, (i, ring) -> blackhole.consume(ring));
+    }
+
+    @Benchmark
+    public void shardedSerial(Blackhole blackhole) {
+        new ShardedExpansion(seeds, new BlockMask(), engine(), SERIAL, ShardedExpansion.DEFAULT_SHARD_TILES)
+                .forEachRing(width, (i, ring) -> blackhole.consume(ring));
+    }
+
+    @Benchmark
+    public void shardedParallel(Blackhole blackhole) {
+        new ShardedExpansion(seeds, new BlockMask(), engine()).forEachRing(width,
+                (i, ring) -> blackhole.consume(ring));
+    }
+}
@@ -0,0 +1,35 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eager {@link RingFinder} construction, the way the tool used to compute all rings up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RingFinderBenchmark {
+    @Param({"4", "16", "64"})
+    int width;
+    @Param({"HEIGHT", "WATER"})
+    Fixtures.Mask mask;
+    @Param({"SINGLE", "TILED", "SCALED"})
+    Fixtures.Layout layout;
+    private BlockMask seeds;
+
+    @Setup
+    public void setup() throws IOException {
+        seeds = Fixtures.mask(mask, layout);
+    }
+
+    @Benchmark
+    public RingFinder construct() {
+        return new RingFinder(seeds, width);
+    }
+}
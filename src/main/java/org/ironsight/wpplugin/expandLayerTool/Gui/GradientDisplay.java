@@ -1,16 +1,22 @@
 package org.ironsight.wpplugin.expandLayerTool.Gui;
 
+import org.ironsight.wpplugin.expandLayerTool.operations.DitherTexture;
 import org.ironsight.wpplugin.expandLayerTool.operations.Gradient;
+import org.ironsight.wpplugin.expandLayerTool.operations.GradientSampler;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Random;
 
 public class GradientDisplay extends JPanel {
     private Gradient gradient;
+    private Gradient.Interpolation interpolation = Gradient.Interpolation.STEP;
+    private GradientSampler sampler;
+    private DitherTexture.Pattern pattern = DitherTexture.Pattern.RANDOM;
+    private long seed;
 
     public GradientDisplay(Gradient gradient) {
         this.gradient = gradient;
+        this.sampler = gradient.compile(interpolation, GradientSampler.DEFAULT_RESOLUTION);
     }
 
     public static void main(String[] args) {
@@ -23,6 +29,21 @@ public class GradientDisplay extends JPanel {
 
     public void setGradient(Gradient gradient) {
         this.gradient = gradient;
+        this.sampler = gradient.compile(interpolation, GradientSampler.DEFAULT_RESOLUTION);
+        repaint();
+    }
+
+    public void setInterpolation(Gradient.Interpolation interpolation) {
+        this.interpolation = interpolation;
+        setGradient(gradient);
+    }
+
+    /**
+     * preview the same blocks the spray would paint, every cell of the display is one block
+     */
+    public void setPattern(DitherTexture.Pattern pattern, long seed) {
+        this.pattern = pattern;
+        this.seed = seed;
         repaint();
     }
 
@@ -35,10 +56,9 @@ public class GradientDisplay extends JPanel {
         g2.setColor(Color.RED);
         int scale = 10;
         for (int w = 0; w < getWidth(); w += scale) {
-            Random r = new Random(w);
-            float chance = gradient.getValue((float) w / getWidth());
+            float chance = sampler.sample((float) w / getWidth());
             for (int h = 0; h < getHeight(); h += scale) {
-                if (chance > r.nextFloat()) {
+                if (chance > pattern.threshold(seed, w / scale, h / scale)) {
                     g2.fillRect(w, h, scale, scale);
                 }
             }
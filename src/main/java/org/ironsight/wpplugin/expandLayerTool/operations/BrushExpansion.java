@@ -0,0 +1,225 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.WORDS_PER_ROW;
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.WORDS_PER_TILE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * The expansion inside a round brush, for one stroke of the editor tool. Every dab only expands the tiles under the
+ * brush, from the input up to the width (and the border margin) around them, and paints the output inside the brush.
+ * That is a few tiles at most, so a dab takes about as long no matter how big the map is. A wide expansion still takes
+ * too long for the ui thread, so a dab can be expanded on another thread and painted on the ui thread afterwards.
+ * <p>
+ * The input of every tile is read once per stroke and kept, so painting the output never changes the input a later dab
+ * of the same stroke sees, even if both are the same layer.
+ */
+public class BrushExpansion {
+    private final TileSource source;
+    private final EdgeExpansionOptions options;
+    private final BlockMask input = new BlockMask();
+    private final Set<Long> scanned = new HashSet<>();
+
+    /**
+     * @param options copied. a dab is too small to be worth parallel or off-heap, the clean input option is ignored
+     *                and clean output only clears the output under the brush.
+     */
+    public BrushExpansion(TileSource source, EdgeExpansionOptions options) {
+        this.source = source;
+        this.options = options.copy();
+        this.options.parallel = false;
+        this.options.offHeap = false;
+    }
+
+    /**
+     * expand the input around the centre and paint it inside the brush
+     *
+     * @param erase take the output away under the brush instead
+     * @return the blocks that were painted
+     */
+    public BlockMask dab(int centreX, int centreY, int radius, boolean erase) throws IOException,
+            InterruptedException {
+        Dab dab = expand(centreX, centreY, radius, erase);
+        paint(dab);
+        return dab.getPainted();
+    }
+
+    /**
+     * expand the input around the centre, without changing the source. the dabs of a stroke are expanded one after
+     * the other, each once the one before is painted, but not necessarily on the thread that paints them.
+     *
+     * @param erase take the output away under the brush instead
+     */
+    public Dab expand(int centreX, int centreY, int radius, boolean erase) throws IOException {
+        return expand(disc(centreX, centreY, radius), erase);
+    }
+
+    /**
+     * expand the input around a footprint of any shape, like the discs of several dabs together
+     *
+     * @param brush the blocks to paint or erase, only read
+     */
+    public Dab expand(BlockMask brush, boolean erase) throws IOException {
+        final BlockMask painted = new BlockMask();
+        if (!erase && !brush.isEmpty()) {
+            // the spray of a block can depend on the rings of its whole tile, so every tile under the brush is
+            // expanded completely
+            int margin = options.width + EdgeExpansion.margin(options.width, options);
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (long key : brush.tileKeys()) {
+                minX = Math.min(minX, BlockMask.tileX(key) << TILE_SIZE_BITS);
+                minY = Math.min(minY, BlockMask.tileY(key) << TILE_SIZE_BITS);
+                maxX = Math.max(maxX, (BlockMask.tileX(key) << TILE_SIZE_BITS) | (TILE_SIZE - 1));
+                maxY = Math.max(maxY, (BlockMask.tileY(key) << TILE_SIZE_BITS) | (TILE_SIZE - 1));
+            }
+            BlockMask local = clip(minX - margin, minY - margin, maxX + margin, maxY + margin);
+            if (!local.isEmpty()) {
+                try (DistanceField field = EdgeExpansion.expand(local, options.width, options, source::heights)) {
+                    ArrayList<Long> keys = new ArrayList<>(brush.tileKeys());
+                    keys.retainAll(field.tileKeys());
+                    long[][] output = EdgeExpansion.apply(field, keys, options.dir, EdgeExpansion.sprayer(
+                            options.width, options), false, () -> {
+                    });
+                    for (int k = 0; k < keys.size(); k++) {
+                        if (output[k] == null) continue;
+                        long[] inside = brush.tileWords(keys.get(k));
+                        for (int i = 0; i < WORDS_PER_TILE; i++)
+                            output[k][i] &= inside[i];
+                        painted.putTile(keys.get(k), output[k]);
+                    }
+                }
+            }
+        }
+        return new Dab(brush, painted, erase);
+    }
+
+    /**
+     * paint an expanded dab onto the source
+     */
+    public void paint(Dab dab) throws InterruptedException {
+        source.changes(() -> {
+            if (dab.erase || options.cleanOutput) {
+                for (long key : dab.brush.tileKeys())
+                    source.erase(key, dab.brush.tileWords(key), options.outputAsSelection, EdgeExpansion.CYAN);
+            }
+            for (long key : dab.painted.tileKeys())
+                source.paint(key, dab.painted.tileWords(key), options.outputAsSelection, EdgeExpansion.CYAN);
+        });
+    }
+
+    /**
+     * one expanded dab, ready to be painted
+     */
+    public static final class Dab {
+        private final BlockMask brush, painted;
+        private final boolean erase;
+
+        private Dab(BlockMask brush, BlockMask painted, boolean erase) {
+            this.brush = brush;
+            this.painted = painted;
+            this.erase = erase;
+        }
+
+        /**
+         * @return the blocks the dab paints
+         */
+        public BlockMask getPainted() {
+            return painted;
+        }
+    }
+
+    /**
+     * @return the input inside the rectangle, reading the tiles this stroke has not seen yet
+     */
+    private BlockMask clip(int minX, int minY, int maxX, int maxY) {
+        ArrayList<Long> unseen = new ArrayList<>();
+        for (int tx = minX >> TILE_SIZE_BITS; tx <= maxX >> TILE_SIZE_BITS; tx++)
+            for (int ty = minY >> TILE_SIZE_BITS; ty <= maxY >> TILE_SIZE_BITS; ty++) {
+                long key = BlockMask.tileKey(tx, ty);
+                if (scanned.add(key) && source.hasLayer(key, options.inputFromSelection)) unseen.add(key);
+            }
+        BlockMask read = SeedScanner.scan(source, unseen, options.inputFromSelection, EdgeExpansion.CYAN, false,
+                () -> {
+                });
+        for (long key : read.tileKeys())
+            input.putTile(key, read.tileWords(key));
+
+        BlockMask clipped = new BlockMask();
+        long[] row = new long[WORDS_PER_ROW];
+        for (long key : input.tileKeys()) {
+            int originX = BlockMask.tileX(key) << TILE_SIZE_BITS, originY = BlockMask.tileY(key) << TILE_SIZE_BITS;
+            if (originX > maxX || originY > maxY || originX + TILE_SIZE <= minX || originY + TILE_SIZE <= minY)
+                continue;
+            long[] words = input.tileWords(key).clone();
+            Arrays.fill(row, 0);
+            setRange(row, 0, minX - originX, maxX - originX);
+            for (int y = 0; y < TILE_SIZE; y++) {
+                if (originY + y < minY || originY + y > maxY) {
+                    for (int w = 0; w < WORDS_PER_ROW; w++)
+                        words[y * WORDS_PER_ROW + w] = 0;
+                    continue;
+                }
+                for (int w = 0; w < WORDS_PER_ROW; w++)
+                    words[y * WORDS_PER_ROW + w] &= row[w];
+            }
+            clipped.putTile(key, words);
+        }
+        return clipped;
+    }
+
+    /**
+     * @return all blocks at most radius away from the centre
+     */
+    static BlockMask disc(int centreX, int centreY, int radius) {
+        return addDisc(new BlockMask(), centreX, centreY, radius);
+    }
+
+    /**
+     * add all blocks at most radius away from the centre to the footprint
+     *
+     * @return the footprint
+     */
+    public static BlockMask addDisc(BlockMask footprint, int centreX, int centreY, int radius) {
+        for (int tx = (centreX - radius) >> TILE_SIZE_BITS; tx <= (centreX + radius) >> TILE_SIZE_BITS; tx++)
+            for (int ty = (centreY - radius) >> TILE_SIZE_BITS; ty <= (centreY + radius) >> TILE_SIZE_BITS; ty++) {
+                int originX = tx << TILE_SIZE_BITS, originY = ty << TILE_SIZE_BITS;
+                long[] words = new long[WORDS_PER_TILE];
+                for (int y = Math.max(0, centreY - radius - originY); y < Math.min(TILE_SIZE,
+                        centreY + radius + 1 - originY); y++) {
+                    int dy = originY + y - centreY;
+                    int dx = (int) Math.sqrt((double) radius * radius - (double) dy * dy);
+                    setRange(words, y * WORDS_PER_ROW, centreX - dx - originX, centreX + dx - originX);
+                }
+                long key = BlockMask.tileKey(tx, ty);
+                long[] old = footprint.tileWords(key);
+                if (old != null)
+                    for (int i = 0; i < WORDS_PER_TILE; i++)
+                        words[i] |= old[i];
+                footprint.putTile(key, words);
+            }
+        return footprint;
+    }
+
+    /**
+     * set the bits from..to (inclusive, clamped to the tile) of the row that starts at word offset
+     */
+    private static void setRange(long[] words, int offset, int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, TILE_SIZE - 1);
+        for (int x = from; x <= to; ) {
+            int bit = x & 63, end = Math.min(to, (x | 63));
+            long bits = end - x == 63 ? -1L : ((1L << (end - x + 1)) - 1) << bit;
+            words[offset + (x >> 6)] |= bits;
+            x = end + 1;
+        }
+    }
+}
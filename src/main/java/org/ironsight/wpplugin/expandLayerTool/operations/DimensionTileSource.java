@@ -0,0 +1,148 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.pepsoft.worldpainter.Dimension;
+import org.pepsoft.worldpainter.Tile;
+import org.pepsoft.worldpainter.layers.Annotations;
+import org.pepsoft.worldpainter.selection.SelectionBlock;
+import org.pepsoft.worldpainter.selection.SelectionChunk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.WORDS_PER_ROW;
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.WORDS_PER_TILE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * The tiles of a worldpainter dimension. The selection is read from both the block and the chunk selection layer,
+ * chunk selection once per 16x16 chunk instead of once per block.
+ */
+public class DimensionTileSource implements TileSource {
+    private static final int CHUNK_SIZE = 16;
+    private final Dimension dimension;
+
+    public DimensionTileSource(Dimension dimension) {
+        this.dimension = dimension;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    private Tile tile(long key) {
+        return dimension.getTile(BlockMask.tileX(key), BlockMask.tileY(key));
+    }
+
+    @Override
+    public Collection<Long> tileKeys() {
+        ArrayList<Long> keys = new ArrayList<>();
+        for (Tile tile : dimension.getTiles())
+            keys.add(BlockMask.tileKey(tile.getX(), tile.getY()));
+        return keys;
+    }
+
+    @Override
+    public boolean isPresent(long key) {
+        return dimension.isTilePresent(BlockMask.tileX(key), BlockMask.tileY(key));
+    }
+
+    @Override
+    public float[] heights(long key) {
+        Tile tile = tile(key);
+        if (tile == null) return null;
+        float[] heights = new float[TILE_SIZE * TILE_SIZE];
+        for (int y = 0; y < TILE_SIZE; y++)
+            for (int x = 0; x < TILE_SIZE; x++)
+                heights[y * TILE_SIZE + x] = tile.getHeight(x, y);
+        return heights;
+    }
+
+    @Override
+    public boolean hasLayer(long key, boolean selection) {
+        Tile tile = tile(key);
+        return tile != null && hasLayer(tile, selection);
+    }
+
+    static boolean hasLayer(Tile tile, boolean selection) {
+        return selection ? tile.hasLayer(SelectionBlock.INSTANCE) || tile.hasLayer(SelectionChunk.INSTANCE) :
+                tile.hasLayer(Annotations.INSTANCE);
+    }
+
+    @Override
+    public long[] readLayer(long key, boolean selection, int annotationValue) {
+        Tile tile = tile(key);
+        if (tile == null) return null;
+        return selection ? readSelection(tile) : readAnnotation(tile, annotationValue);
+    }
+
+    private static long[] readSelection(Tile tile) {
+        boolean blocks = tile.hasLayer(SelectionBlock.INSTANCE), chunks = tile.hasLayer(SelectionChunk.INSTANCE);
+        if (!blocks && !chunks) return null;
+        long[] words = new long[WORDS_PER_TILE];
+        if (chunks) {
+            final long chunkRow = (1L << CHUNK_SIZE) - 1;
+            for (int chunkX = 0; chunkX < TILE_SIZE; chunkX += CHUNK_SIZE)
+                for (int chunkY = 0; chunkY < TILE_SIZE; chunkY += CHUNK_SIZE) {
+                    if (!tile.getBitLayerValue(SelectionChunk.INSTANCE, chunkX, chunkY)) continue;
+                    for (int y = chunkY; y < chunkY + CHUNK_SIZE; y++)
+                        words[y * WORDS_PER_ROW + (chunkX >> 6)] |= chunkRow << (chunkX & 63);
+                }
+        }
+        if (blocks) {
+            for (int y = 0; y < TILE_SIZE; y++)
+                for (int x = 0; x < TILE_SIZE; x++) {
+                    int idx = y * WORDS_PER_ROW + (x >> 6);
+                    if ((words[idx] & (1L << x)) == 0 && tile.getBitLayerValue(SelectionBlock.INSTANCE, x, y))
+                        words[idx] |= 1L << x;
+                }
+        }
+        return words;
+    }
+
+    private static long[] readAnnotation(Tile tile, int annotationMatch) {
+        if (!tile.hasLayer(Annotations.INSTANCE)) return null;
+        long[] words = new long[WORDS_PER_TILE];
+        for (int y = 0; y < TILE_SIZE; y++)
+            for (int x = 0; x < TILE_SIZE; x++) {
+                if (tile.getLayerValue(Annotations.INSTANCE, x, y) == annotationMatch)
+                    words[y * WORDS_PER_ROW + (x >> 6)] |= 1L << x;
+            }
+        return words;
+    }
+
+    @Override
+    public void clearLayer(long key, boolean selection) {
+        Tile tile = tile(key);
+        if (tile == null) return;
+        if (selection) {
+            tile.clearLayerData(SelectionBlock.INSTANCE);
+            tile.clearLayerData(SelectionChunk.INSTANCE);
+        } else {
+            tile.clearLayerData(Annotations.INSTANCE);
+        }
+    }
+
+    @Override
+    public void paint(long key, long[] words, boolean selection, int annotationValue) {
+        Tile tile = tile(key);
+        if (tile == null) return;   // outside of the map
+        OutputWriter.writeTile(tile, words, selection, annotationValue);
+    }
+
+    @Override
+    public void erase(long key, long[] words, boolean selection, int annotationValue) {
+        Tile tile = tile(key);
+        if (tile != null) OutputWriter.eraseTile(tile, words, selection, annotationValue);
+    }
+
+    @Override
+    public void changes(Runnable changes) throws InterruptedException {
+        dimension.setEventsInhibited(true);
+        try {
+            changes.run();
+        } finally {
+            dimension.setEventsInhibited(false);
+        }
+    }
+}
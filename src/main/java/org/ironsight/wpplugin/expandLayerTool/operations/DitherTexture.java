@@ -0,0 +1,181 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import java.util.Random;
+
+/**
+ * A tileable 64x64 threshold texture. A block is painted if its chance is above the threshold at
+ * {@code (x & 63, y & 63)}, so a uniform chance p paints exactly a fraction p of every 64x64 area.
+ */
+public final class DitherTexture {
+    public static final int SIZE_BITS = 6;
+    public static final int SIZE = 1 << SIZE_BITS;
+    public static final int MASK = SIZE - 1;
+    public static final DitherTexture BAYER = new DitherTexture(bayerRanks());
+    private static volatile DitherTexture blueNoise;
+
+    private final float[] thresholds;
+
+    private DitherTexture(int[] ranks) {
+        thresholds = new float[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            thresholds[i] = (ranks[i] + 0.5f) / ranks.length;
+    }
+
+    public float threshold(int x, int y) {
+        return thresholds[((y & MASK) << SIZE_BITS) | (x & MASK)];
+    }
+
+    /**
+     * @param texture null for the seeded random pattern
+     * @return the threshold a block's chance has to beat to be painted
+     */
+    static float threshold(DitherTexture texture, long seed, int x, int y) {
+        return texture == null ? SprayHash.nextFloat(seed, x, y) : texture.threshold(x, y);
+    }
+
+    /**
+     * blue noise mask, generated once on first use with the void-and-cluster method
+     */
+    public static DitherTexture blueNoise() {
+        if (blueNoise == null) {
+            synchronized (DitherTexture.class) {
+                if (blueNoise == null) blueNoise = new DitherTexture(new VoidAndCluster().ranks());
+            }
+        }
+        return blueNoise;
+    }
+
+    /**
+     * what a block's chance is compared against
+     */
+    public enum Pattern {
+        /** a hash of the seed and the position, see {@link SprayHash} */
+        RANDOM,
+        /** ordered dither, regular cross hatch */
+        BAYER,
+        /** even, grain free dots without a visible grid */
+        BLUE_NOISE;
+
+        /**
+         * @return the texture of this pattern, null for {@link #RANDOM}
+         */
+        public DitherTexture texture() {
+            switch (this) {
+                case BAYER:
+                    return DitherTexture.BAYER;
+                case BLUE_NOISE:
+                    return blueNoise();
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return the threshold in [0, 1) a block's chance has to beat to be painted
+         */
+        public float threshold(long seed, int x, int y) {
+            return DitherTexture.threshold(texture(), seed, x, y);
+        }
+    }
+
+    /**
+     * ordered dither matrix, built recursively from the 2x2 matrix [[0, 2], [3, 1]]
+     */
+    private static int[] bayerRanks() {
+        int[] ranks = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++)
+            for (int x = 0; x < SIZE; x++) {
+                int rank = 0;
+                for (int bit = SIZE_BITS - 1; bit >= 0; bit--) {
+                    int bx = (x >> bit) & 1, by = (y >> bit) & 1;
+                    rank = (rank << 2) | (by == 0 ? (bx == 0 ? 0 : 2) : (bx == 0 ? 3 : 1));
+                }
+                // the most significant level must vary fastest, so reverse the order of the 2 bit digits
+                int reversed = 0;
+                for (int digit = 0; digit < SIZE_BITS; digit++) {
+                    reversed = (reversed << 2) | (rank & 3);
+                    rank >>= 2;
+                }
+                ranks[(y << SIZE_BITS) | x] = reversed;
+            }
+        return ranks;
+    }
+
+    /**
+     * Ulichney's void-and-cluster on a torus: the tightest cluster and the largest void are found through a gaussian
+     * energy that is updated incrementally whenever a pixel flips.
+     */
+    private static class VoidAndCluster {
+        private static final int N = SIZE * SIZE;
+        private final float[] kernel = new float[N];
+
+        VoidAndCluster() {
+            final double sigma = 1.5;
+            for (int dy = 0; dy < SIZE; dy++)
+                for (int dx = 0; dx < SIZE; dx++) {
+                    int wx = Math.min(dx, SIZE - dx), wy = Math.min(dy, SIZE - dy);
+                    kernel[(dy << SIZE_BITS) | dx] = (float) Math.exp(-(wx * wx + wy * wy) / (2 * sigma * sigma));
+                }
+        }
+
+        private void flip(float[] energy, int pixel, float sign) {
+            int px = pixel & MASK, py = pixel >> SIZE_BITS;
+            for (int q = 0; q < N; q++) {
+                int dx = ((q & MASK) - px) & MASK, dy = ((q >> SIZE_BITS) - py) & MASK;
+                energy[q] += sign * kernel[(dy << SIZE_BITS) | dx];
+            }
+        }
+
+        private static int extreme(float[] energy, boolean[] pattern, boolean ones) {
+            int best = -1;
+            for (int q = 0; q < N; q++) {
+                if (pattern[q] != ones) continue;
+                if (best == -1 || (ones ? energy[q] > energy[best] : energy[q] < energy[best])) best = q;
+            }
+            return best;
+        }
+
+        int[] ranks() {
+            // initial random pattern, relaxed until moving the tightest cluster no longer changes anything
+            boolean[] initial = new boolean[N];
+            float[] initialEnergy = new float[N];
+            Random random = new Random(0);
+            int ones = 0;
+            while (ones < N / 10) {
+                int q = random.nextInt(N);
+                if (initial[q]) continue;
+                initial[q] = true;
+                flip(initialEnergy, q, 1);
+                ones++;
+            }
+            while (true) {
+                int cluster = extreme(initialEnergy, initial, true);
+                initial[cluster] = false;
+                flip(initialEnergy, cluster, -1);
+                int hole = extreme(initialEnergy, initial, false);
+                initial[hole] = true;
+                flip(initialEnergy, hole, 1);
+                if (hole == cluster) break;
+            }
+
+            int[] ranks = new int[N];
+            // phase 1: remove the tightest clusters from the initial pattern, highest rank first
+            boolean[] pattern = initial.clone();
+            float[] energy = initialEnergy.clone();
+            for (int rank = ones - 1; rank >= 0; rank--) {
+                int cluster = extreme(energy, pattern, true);
+                pattern[cluster] = false;
+                flip(energy, cluster, -1);
+                ranks[cluster] = rank;
+            }
+            // phase 2 and 3: fill the largest voids, starting again from the initial pattern
+            for (int rank = ones; rank < N; rank++) {
+                int hole = extreme(initialEnergy, initial, false);
+                initial[hole] = true;
+                flip(initialEnergy, hole, 1);
+                ranks[hole] = rank;
+            }
+            return ranks;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DilationRingFinder;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceFieldCache;
+import org.ironsight.wpplugin.expandLayerTool.pathing.GeodesicExpansion;
+import org.ironsight.wpplugin.expandLayerTool.pathing.MappedTileStore;
+import org.ironsight.wpplugin.expandLayerTool.pathing.PyramidDistanceField;
+import org.ironsight.wpplugin.expandLayerTool.pathing.RingExpansion;
+import org.ironsight.wpplugin.expandLayerTool.pathing.ShardedExpansion;
+import org.ironsight.wpplugin.expandLayerTool.pathing.TerrainCost;
+import org.pepsoft.worldpainter.Dimension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * The edge expansion without any ui: read the input layer from a {@link TileSource}, expand it into rings, spray the
+ * gradient over the rings and paint the result as output layer. {@link SelectEdgeOperation} is a thin editor tool
+ * around it, scripts and batch jobs can run it on a dimension directly.
+ * <p>
+ * The map is only read until everything is computed, so a run that fails or is cancelled before the write phase leaves
+ * it as it was. The input is scanned before anything is cleared, so with input and output on the same layer the old
+ * output is part of the input. The write phase can not be cancelled: it clears the output layer, then the input layer
+ * if it is the same one, paints the result in batches of tiles, each batch inside one
+ * {@link TileSource#changes(Runnable)}, and clears an input layer that is not the output last.
+ */
+public class EdgeExpansion {
+    public static final int CYAN = 9;
+    static final int WRITE_BATCH_TILES = 64;
+    // whether a block is on the border of the input depends on its neighbours one block further out
+    static final int BORDER_MARGIN = 1;
+    // wider expansions take their far field from the chunk grid, if the options allow it
+    static final int MULTI_RESOLUTION_ABOVE = 2 * PyramidDistanceField.NEAR_RINGS;
+    private static final long MULTI_RESOLUTION_KEY = 0x6d756c7469726573L;
+    // an off-heap run is asked for because the heap is short, it must not get a cached heap field
+    private static final long OFF_HEAP_KEY = 0x6f66662d68656170L;
+    static final int STREAM_WINDOW_ROWS = 4;
+    private final DistanceFieldCache fieldCache;
+
+    public EdgeExpansion() {
+        this(new DistanceFieldCache(Runtime.getRuntime().maxMemory() / 8));
+    }
+
+    /**
+     * @param fieldCache distance fields kept between runs, shared by all runs of this instance
+     */
+    public EdgeExpansion(DistanceFieldCache fieldCache) {
+        this.fieldCache = fieldCache;
+    }
+
+    /**
+     * expand the input layer of a dimension and paint the output layer, on the calling thread
+     */
+    public void run(Dimension dimension, EdgeExpansionOptions options) throws IOException, InterruptedException {
+        run(new DimensionTileSource(dimension), options, new RunProgress());
+    }
+
+    /**
+     * expand the input layer of the source and paint the output layer
+     *
+     * @param progress reports the phases of the run, and cancels it if asked to
+     */
+    public void run(TileSource source, EdgeExpansionOptions options, RunProgress progress) throws IOException,
+            InterruptedException {
+        try {
+            paint(source, options.copy(), progress);
+        } finally {
+            progress.finish();
+        }
+    }
+
+    private void paint(TileSource source, EdgeExpansionOptions run, RunProgress progress) throws IOException,
+            InterruptedException {
+        final RunStats stats = progress.getStats();
+        stats.options = run;
+        final ArrayList<Long> inputKeys = keysWithLayer(source, source.tileKeys(), run.inputFromSelection);
+        compute(source, inputKeys, run, progress, (keys, output) -> {
+            // the last chance to cancel: nothing was changed on the map up to here, and once the map is changed the
+            // run goes through, so a cancel never leaves it half written
+            progress.start(RunProgress.Phase.WRITE, keys.size());
+            // the output may be the same layer as the input, then the input has to go before the output is painted
+            final boolean sameLayer = run.inputFromSelection == run.outputAsSelection;
+            if (run.cleanOutput) clearLayer(source, keysWithLayer(source, source.tileKeys(), run.outputAsSelection),
+                    run.outputAsSelection);
+            if (run.cleanInput && sameLayer) clearLayer(source, inputKeys, run.inputFromSelection);
+            for (int start = 0; start < keys.size(); start += WRITE_BATCH_TILES) {
+                final int from = start, to = Math.min(start + WRITE_BATCH_TILES, keys.size());
+                source.changes(() -> {
+                    for (int k = from; k < to; k++) {
+                        long[] words = output.apply(k);
+                        if (words == null) continue;
+                        source.paint(keys.get(k), words, run.outputAsSelection, CYAN);
+                        stats.tilesWritten++;
+                    }
+                });
+                progress.advance(to - from);
+            }
+            if (run.cleanInput && !sameLayer) clearLayer(source, inputKeys, run.inputFromSelection);
+        });
+    }
+
+    private static void clearLayer(TileSource source, List<Long> keys, boolean selection) throws
+            InterruptedException {
+        source.changes(() -> {
+            for (long key : keys)
+                source.clearLayer(key, selection);
+        });
+    }
+
+    /**
+     * compute the blocks a run would paint, without changing the source. the clean options are ignored.
+     */
+    public BlockMask compute(TileSource source, EdgeExpansionOptions options, RunProgress progress) throws
+            IOException, InterruptedException {
+        final EdgeExpansionOptions run = options.copy();
+        progress.getStats().options = run;
+        BlockMask painted = new BlockMask();
+        try {
+            compute(source, keysWithLayer(source, source.tileKeys(), run.inputFromSelection), run, progress,
+                    (keys, output) -> {
+                        for (int k = 0; k < keys.size(); k++) {
+                            long[] words = output.apply(k);
+                            if (words != null) painted.putTile(keys.get(k), words);
+                        }
+                    });
+        } finally {
+            progress.finish();
+        }
+        return painted;
+    }
+
+    /**
+     * the tile index of a run: one {@link TileSource#hasLayer} check per tile, made again by every run instead of being
+     * kept up to date by tile listeners. only the tiles that pass are scanned, expanded around and cleared.
+     */
+    static ArrayList<Long> keysWithLayer(TileSource source, Iterable<Long> keys, boolean selection) {
+        ArrayList<Long> withLayer = new ArrayList<>();
+        for (long key : keys)
+            if (source.hasLayer(key, selection)) withLayer.add(key);
+        return withLayer;
+    }
+
+    /**
+     * the painted tiles of a run, in the order they should be written
+     */
+    private interface PaintedTiles {
+        void accept(List<Long> keys, IntFunction<long[]> output) throws IOException, InterruptedException;
+    }
+
+    private void compute(TileSource source, ArrayList<Long> inputKeys, EdgeExpansionOptions options,
+                         RunProgress progress, PaintedTiles painted) throws IOException, InterruptedException {
+        if (options.streaming) {
+            computeStreaming(source, inputKeys, options, progress, painted);
+            return;
+        }
+        progress.start(RunProgress.Phase.SCAN, inputKeys.size());
+        BlockMask edge = SeedScanner.scan(source, inputKeys, options.inputFromSelection, CYAN, options.parallel,
+                progress::step);
+        RunStats stats = progress.getStats();
+        stats.tilesScanned += inputKeys.size();
+        stats.seeds += edge.size();
+
+        // the field only depends on the input, every direction, gradient and smaller width can reuse it
+        progress.start(RunProgress.Phase.EXPAND, 0);
+        int width = options.width;
+        long key = edge.fingerprint() ^ (isMultiResolution(width, options) ? MULTI_RESOLUTION_KEY : 0) ^
+                (options.offHeap ? OFF_HEAP_KEY : 0);
+        // rings over the terrain also depend on the heights, which can change without the input changing
+        DistanceField field = options.followTerrain ? null : fieldCache.acquire(key, width);
+        // a cached field is shared with other runs, it is released instead of closed
+        boolean cached = field != null;
+        if (!cached) {
+            field = expand(edge, width, options, source::heights);
+            cached = !options.followTerrain && fieldCache.put(key, field);
+        } else {
+            stats.cachedField = true;
+        }
+
+        ArrayList<Long> keys = new ArrayList<>(field.tileKeys());
+        long[][] output;
+        try {
+            progress.start(RunProgress.Phase.APPLY, keys.size());
+            output = apply(field, keys, options.dir, sprayer(width, options), options.parallel, progress::step);
+            long[] ringSizes = new long[width];
+            field.countRings(keys, options.dir::ring, ringSizes);
+            stats.addRings(ringSizes, width);
+        } finally {
+            if (cached) fieldCache.release(field);
+            else field.close();
+        }
+        stats.blocksPainted += countBlocks(output);
+        painted.accept(keys, k -> output[k]);
+    }
+
+    /**
+     * Expand and spray the map in windows of tile rows. A window only needs the seeds up to the width (plus the
+     * border margin) above and below it, so only those halo rows are carried over to the next window,
+     * and the distances of one window at a time are held in memory. The painted tiles are spilled to a memory mapped
+     * scratch file, and only written once all windows are done, because the output layer may be the input of a later
+     * window.
+     */
+    private void computeStreaming(TileSource source, ArrayList<Long> inputKeys, EdgeExpansionOptions options,
+                                  RunProgress progress, PaintedTiles painted) throws IOException,
+            InterruptedException {
+        TreeMap<Integer, ArrayList<Long>> rows = new TreeMap<>();
+        for (long key : inputKeys)
+            rows.computeIfAbsent(BlockMask.tileY(key), y -> new ArrayList<>()).add(key);
+        if (rows.isEmpty()) {
+            // nothing to expand, but a run still cleans its layers
+            painted.accept(Collections.emptyList(), k -> null);
+            return;
+        }
+
+        final int width = options.width;
+        final int halo = (width + margin(width, options) + TILE_SIZE - 1) / TILE_SIZE;
+        final int windowRows = Math.max(STREAM_WINDOW_ROWS, 2 * halo);
+        final int first = rows.firstKey() - halo, last = rows.lastKey() + halo;
+        progress.start(RunProgress.Phase.STREAM, (last - first) / windowRows + 1);
+        Sprayer sprayer = sprayer(width, options);
+        RunStats stats = progress.getStats();
+        long[] ringSizes = new long[width];
+        try (MappedTileStore spill = new MappedTileStore(BlockMask.WORDS_PER_TILE * 8)) {
+            BlockMask seeds = new BlockMask();
+            int scannedTo = first - halo;
+            for (int top = first; top <= last; top += windowRows) {
+                final int windowTop = top, windowBottom = top + windowRows;
+                // carry the halo: forget rows that are out of reach, scan the rows that came into reach
+                for (long key : new ArrayList<>(seeds.tileKeys()))
+                    if (BlockMask.tileY(key) < windowTop - halo) seeds.removeTile(key);
+                ArrayList<Long> scan = new ArrayList<>();
+                for (ArrayList<Long> row : rows.subMap(scannedTo, windowBottom + halo).values())
+                    scan.addAll(row);
+                scannedTo = windowBottom + halo;
+                BlockMask scanned = SeedScanner.scan(source, scan, options.inputFromSelection, CYAN, options.parallel,
+                        progress::checkCancelled);
+                for (long key : scanned.tileKeys())
+                    seeds.putTile(key, scanned.tileWords(key));
+                stats.tilesScanned += scan.size();
+                stats.seeds += scanned.size();
+
+                if (!seeds.isEmpty()) {
+                    try (DistanceField field = expand(seeds, width, options, source::heights)) {
+                        ArrayList<Long> keys = new ArrayList<>(field.tileKeys());
+                        keys.removeIf(key -> BlockMask.tileY(key) < windowTop || BlockMask.tileY(key) >= windowBottom);
+                        long[][] output = apply(field, keys, options.dir, sprayer, options.parallel,
+                                progress::checkCancelled);
+                        for (int k = 0; k < keys.size(); k++)
+                            if (output[k] != null) spill.putWords(keys.get(k), output[k]);
+                        field.countRings(keys, options.dir::ring, ringSizes);
+                        stats.blocksPainted += countBlocks(output);
+                    }
+                }
+                progress.step();
+            }
+            stats.addRings(ringSizes, width);
+
+            List<Long> keys = spill.tileKeys();
+            painted.accept(keys, k -> {
+                try {
+                    return spill.getWords(keys.get(k), BlockMask.WORDS_PER_TILE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    static long countBlocks(long[][] output) {
+        long count = 0;
+        for (long[] words : output) {
+            if (words == null) continue;
+            for (long word : words)
+                count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    static boolean isMultiResolution(int width, EdgeExpansionOptions options) {
+        return options.multiResolution && !options.followTerrain && width > MULTI_RESOLUTION_ABOVE;
+    }
+
+    /**
+     * @return how much input beyond the width a block can depend on
+     */
+    static int margin(int width, EdgeExpansionOptions options) {
+        if (options.followTerrain) return TerrainCost.reach(width) - width + BORDER_MARGIN;
+        return isMultiResolution(width, options) ? BORDER_MARGIN + PyramidDistanceField.SLACK : BORDER_MARGIN;
+    }
+
+    /**
+     * signed distance field of the input on flat ground, deep enough for every direction at this width
+     */
+    static DistanceField expand(BlockMask input, int width, EdgeExpansionOptions options) throws IOException {
+        EdgeExpansionOptions flat = options.copy();
+        flat.followTerrain = false;
+        return expand(input, width, flat, null);
+    }
+
+    /**
+     * signed distance field of the input, deep enough for every direction at this width
+     *
+     * @param heights the terrain, if the rings follow it
+     */
+    static DistanceField expand(BlockMask input, int width, EdgeExpansionOptions options,
+                                TerrainCost.Heights heights) throws IOException {
+        if (options.followTerrain) {
+            TerrainCost cost = new TerrainCost(heights, options.uphillCost, options.cliffHeight);
+            return signedField(input, width, GeodesicExpansion.engine(cost), options, options.offHeap);
+        }
+        if (!isMultiResolution(width, options))
+            return signedField(input, width, options.engine, options, options.offHeap);
+        BlockMask[] chunks = PyramidDistanceField.chunkMasks(input);
+        int coarseRings = PyramidDistanceField.coarseRings(width);
+        DistanceField near = signedField(input, PyramidDistanceField.NEAR_RINGS, options.engine, options,
+                options.offHeap);
+        DistanceField anyChunks = null;
+        try {
+            anyChunks = signedField(chunks[0], coarseRings, options.engine, options, false);
+            return new PyramidDistanceField(input, width, near, anyChunks, signedField(chunks[1], coarseRings,
+                    options.engine, options, false));
+        } catch (IOException | RuntimeException e) {
+            near.close();
+            if (anyChunks != null) anyChunks.close();
+            throw e;
+        }
+    }
+
+    private static DistanceField signedField(BlockMask mask, int width, RingExpansion.Factory engine,
+                                             EdgeExpansionOptions options, boolean offHeap) throws IOException {
+        BlockMask border = DilationRingFinder.border(mask);
+        // the shards write their parts of the rings into the field as they finish, the whole map is never held
+        RingExpansion expansion = options.parallel ? new ShardedExpansion(border, new BlockMask(), engine) :
+                engine.create(border, new BlockMask(), width + 1);
+        return DistanceField.signed(mask, expansion, width, offHeap);
+    }
+
+    /**
+     * one chance per ring, so the inner loop of the spray is a plain table lookup
+     */
+    static Sprayer sprayer(int width, EdgeExpansionOptions options) {
+        float[] chances = new float[width];
+        for (int w = 0; w < width; w++)
+            chances[w] = options.gradient.getValue((float) w / width, options.interpolation);
+        return new Sprayer(chances, options.seed, options.sparseSpray, options.pattern);
+    }
+
+    /**
+     * spray the gradient over the rings of the given tiles of a signed field
+     *
+     * @return the painted blocks per tile of keys, null for tiles without any
+     */
+    static long[][] apply(DistanceField field, List<Long> keys, EdgeExpansionOptions.Direction dir, Sprayer sprayer,
+                          boolean parallel, Runnable tileDone) {
+        // decide every tile on its own, the spray only depends on the seed and the block position
+        long[][] output = new long[keys.size()][];
+        // tiles that are not on the heap are decoded into one buffer per thread
+        ThreadLocal<short[]> buffers = ThreadLocal.withInitial(() -> new short[TILE_SIZE * TILE_SIZE]);
+        IntStream indices = IntStream.range(0, keys.size());
+        if (parallel) indices = indices.parallel();
+        indices.forEach(k -> {
+            short[] distances = field.tileDistances(keys.get(k), buffers.get());
+            if (distances != null) output[k] = sprayer.sprayTile(keys.get(k), distances, dir::ring);
+            tileDone.run();
+        });
+        return output;
+    }
+}
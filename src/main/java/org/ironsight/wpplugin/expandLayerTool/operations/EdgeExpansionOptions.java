@@ -0,0 +1,84 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+import org.ironsight.wpplugin.expandLayerTool.pathing.RingExpansion;
+
+import java.util.Random;
+
+/**
+ * Everything an {@link EdgeExpansion} run depends on. A run works on its own copy, so an options object can be changed
+ * while a run is going on.
+ */
+public class EdgeExpansionOptions implements Cloneable {
+    public int width = 3;
+    public Direction dir = Direction.OUTWARD;
+    public RingExpansion.Engine engine = RingExpansion.Engine.BIT_DILATION;
+    public boolean parallel = true;
+    public Gradient.Interpolation interpolation = Gradient.Interpolation.STEP;
+    public long seed = new Random().nextInt(1000000);
+    // faster for low chances, but the random pattern no longer matches the gradient preview, so opt-in
+    public boolean sparseSpray = false;
+    public DitherTexture.Pattern pattern = DitherTexture.Pattern.RANDOM;
+    public boolean streaming = false;
+    public boolean offHeap = false;
+    // distances far from the edge come from the chunk grid, see PyramidDistanceField. approximate, so opt-in
+    public boolean multiResolution = false;
+    // rings follow the terrain, see GeodesicExpansion. uphill is the extra cost of climbing a block, in rings
+    public boolean followTerrain = false;
+    public float uphillCost = 1f;
+    public float cliffHeight = 3f;
+    public boolean cleanOutput = false;
+    public boolean cleanInput = false;
+    public boolean outputAsSelection = true;
+    public boolean inputFromSelection = false;
+    public Gradient gradient = new Gradient(new float[]{0.01f, 0.15f, 0.25f, 0.5f, 1f}, new float[]{1f, 0.4f, 0.2f,
+            0.1f, 0.03f});
+
+    /**
+     * @return a shallow copy. gradients are never changed in place, so sharing them is fine.
+     */
+    public EdgeExpansionOptions copy() {
+        try {
+            return (EdgeExpansionOptions) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Which band around the edge of the input is painted. Every direction is a selection of rings on the same signed
+     * distance field, see {@link #ring(int)}.
+     */
+    public enum Direction {
+        // the blocks around the input, starting next to it
+        OUTWARD,
+        // the blocks of the input, starting at its edge
+        INWARD,
+        // the blocks around the input, continued into it
+        BOTH,
+        // the input itself as ring 0, then the blocks around it
+        OUT_AND_KEEP;
+
+        /**
+         * @param distance signed distance to the edge of the input, negative inside of it
+         * @return the ring of a block at that distance, {@link DistanceField#UNREACHED} if it is in none
+         */
+        public int ring(int distance) {
+            if (distance == DistanceField.UNREACHED) return DistanceField.UNREACHED;
+            if (distance == DistanceField.UNREACHED_INSIDE)
+                return this == OUT_AND_KEEP ? 0 : DistanceField.UNREACHED;
+            boolean inside = distance < 0;
+            switch (this) {
+                case OUTWARD:
+                    return inside ? DistanceField.UNREACHED : distance - 1;
+                case INWARD:
+                    return inside ? -distance - 1 : DistanceField.UNREACHED;
+                case BOTH:
+                    return inside ? -distance : distance - 1;
+                case OUT_AND_KEEP:
+                default:
+                    return inside ? 0 : distance;
+            }
+        }
+    }
+}
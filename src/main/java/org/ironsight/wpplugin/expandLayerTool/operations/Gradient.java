@@ -26,4 +26,31 @@ public class Gradient {
         return values[idx];
     }
 
+    /**
+     * reference implementation for all interpolation modes. STEP is the same as {@link #getValue(float)}, LINEAR and
+     * SMOOTHSTEP blend between the two control points around x.
+     */
+    public float getValue(float x, Interpolation mode) {
+        if (mode == Interpolation.STEP) return getValue(x);
+        int last = positions.length - 1;
+        if (x <= positions[0]) return values[0];
+        if (x >= positions[last]) return values[last];
+        int idx = Arrays.binarySearch(positions, x);
+        if (idx >= 0) return values[idx];
+        idx = -idx - 1;
+        float t = (x - positions[idx - 1]) / (positions[idx] - positions[idx - 1]);
+        if (mode == Interpolation.SMOOTHSTEP) t = t * t * (3 - 2 * t);
+        return values[idx - 1] + (values[idx] - values[idx - 1]) * t;
+    }
+
+    /**
+     * precompute the gradient into a lookup table with the given amount of steps between 0 and 1
+     */
+    public GradientSampler compile(Interpolation mode, int resolution) {
+        return new GradientSampler(this, mode, resolution);
+    }
+
+    public enum Interpolation {
+        STEP, LINEAR, SMOOTHSTEP
+    }
 }
@@ -0,0 +1,30 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+/**
+ * A {@link Gradient} baked into a lookup table, so sampling is one multiplication and one array read instead of a
+ * binary search. Samples between table entries snap to the nearest entry.
+ */
+public class GradientSampler {
+    public static final int DEFAULT_RESOLUTION = 4096;
+    private final float[] table;
+    private final int resolution;
+
+    GradientSampler(Gradient gradient, Gradient.Interpolation mode, int resolution) {
+        this.resolution = resolution;
+        table = new float[resolution + 1];
+        for (int i = 0; i <= resolution; i++) {
+            table[i] = gradient.getValue((float) i / resolution, mode);
+        }
+    }
+
+    public float sample(float x) {
+        int idx = (int) (x * resolution + 0.5f);
+        if (idx < 0) return table[0];
+        if (idx > resolution) return table[resolution];
+        return table[idx];
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+}
@@ -0,0 +1,131 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.pepsoft.worldpainter.Dimension;
+import org.pepsoft.worldpainter.Tile;
+import org.pepsoft.worldpainter.layers.Annotations;
+import org.pepsoft.worldpainter.layers.Layer;
+import org.pepsoft.worldpainter.selection.SelectionBlock;
+import org.pepsoft.worldpainter.selection.SelectionChunk;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the tiles of a dimension whose input layer changed, for a {@link LiveExpansion}. Listens to every tile, and
+ * to the dimension for tiles that are added or removed. An expansion that follows the terrain also depends on the
+ * height map, so then tiles whose heights changed count as changed too. Changes made while
+ * {@link #setIgnoring ignoring} are the tool's own writes and are skipped.
+ */
+class InputWatcher implements Tile.Listener, Dimension.Listener {
+    private final Dimension dimension;
+    private final boolean selection, heights;
+    private final Runnable onChange;
+    private final Set<Long> changed = new LinkedHashSet<>();
+    private volatile boolean ignoring;
+
+    /**
+     * @param heights watch the height map as well, for expansions that follow the terrain
+     * @param onChange called on the thread of the event, every time a tile changes
+     */
+    InputWatcher(Dimension dimension, boolean selection, boolean heights, Runnable onChange) {
+        this.dimension = dimension;
+        this.selection = selection;
+        this.heights = heights;
+        this.onChange = onChange;
+    }
+
+    void attach() {
+        dimension.addDimensionListener(this);
+        for (Tile tile : dimension.getTiles())
+            tile.addListener(this);
+    }
+
+    void detach() {
+        dimension.removeDimensionListener(this);
+        for (Tile tile : dimension.getTiles())
+            tile.removeListener(this);
+    }
+
+    void setIgnoring(boolean ignoring) {
+        this.ignoring = ignoring;
+    }
+
+    /**
+     * @return the tiles changed since the last call
+     */
+    synchronized Set<Long> takeChanged() {
+        Set<Long> tiles = new LinkedHashSet<>(changed);
+        changed.clear();
+        return tiles;
+    }
+
+    synchronized boolean hasChanged() {
+        return !changed.isEmpty();
+    }
+
+    private void changed(Tile tile) {
+        if (ignoring) return;
+        synchronized (this) {
+            changed.add(BlockMask.tileKey(tile.getX(), tile.getY()));
+        }
+        onChange.run();
+    }
+
+    private boolean isInput(Layer layer) {
+        return selection ? layer.equals(SelectionBlock.INSTANCE) || layer.equals(SelectionChunk.INSTANCE) :
+                layer.equals(Annotations.INSTANCE);
+    }
+
+    @Override
+    public void layerDataChanged(Tile tile, Set<Layer> changedLayers) {
+        for (Layer layer : changedLayers)
+            if (isInput(layer)) {
+                changed(tile);
+                return;
+            }
+    }
+
+    @Override
+    public void allBitLayerDataChanged(Tile tile) {
+        if (selection) changed(tile);
+    }
+
+    @Override
+    public void allNonBitlayerDataChanged(Tile tile) {
+        if (!selection) changed(tile);
+    }
+
+    @Override
+    public void tilesAdded(Dimension dimension, Set<Tile> tiles) {
+        for (Tile tile : tiles) {
+            tile.addListener(this);
+            changed(tile);
+        }
+    }
+
+    @Override
+    public void tilesRemoved(Dimension dimension, Set<Tile> tiles) {
+        for (Tile tile : tiles) {
+            tile.removeListener(this);
+            changed(tile);
+        }
+    }
+
+    @Override
+    public void heightMapChanged(Tile tile) {
+        if (heights) changed(tile);
+    }
+
+    @Override
+    public void terrainChanged(Tile tile) {
+    }
+
+    @Override
+    public void waterLevelChanged(Tile tile) {
+    }
+
+    @Override
+    public void seedsChanged(Tile tile) {
+    }
+}
@@ -0,0 +1,156 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * Keeps the output layer of an expansion up to date while the input layer is edited. The first run expands the whole
+ * map, after that only the tiles around changed input tiles are recomputed: a block only depends on the input up to
+ * the width away, so the output of every tile within the width of a change is expanded again from the input around
+ * it, and compared against what was painted there before. Only the difference is written.
+ * <p>
+ * The output is remembered, so it has to be a different layer than the input, and nothing else should paint the
+ * output layer while the expansion is live.
+ */
+public class LiveExpansion {
+    private final TileSource source;
+    private final EdgeExpansionOptions options;
+    // everything this expansion has painted on the output layer
+    private final BlockMask painted = new BlockMask();
+
+    /**
+     * @param options copied, later changes are not picked up. the clean options are ignored.
+     */
+    public LiveExpansion(TileSource source, EdgeExpansionOptions options) {
+        if (options.inputFromSelection == options.outputAsSelection)
+            throw new IllegalArgumentException("input and output are the same layer");
+        this.source = source;
+        this.options = options.copy();
+    }
+
+    /**
+     * expand the whole map and paint the output
+     */
+    public void start(RunProgress progress) throws IOException, InterruptedException {
+        update(source.tileKeys(), progress);
+    }
+
+    /**
+     * recompute the output around tiles whose input changed, including tiles that were added or removed
+     */
+    public void update(Collection<Long> changedTiles, RunProgress progress) throws IOException,
+            InterruptedException {
+        try {
+            patch(changedTiles, progress);
+        } finally {
+            progress.finish();
+        }
+    }
+
+    /**
+     * @return the blocks currently painted by this expansion. must not be modified.
+     */
+    public BlockMask getPainted() {
+        return painted;
+    }
+
+    private void patch(Collection<Long> changedTiles, RunProgress progress) throws IOException,
+            InterruptedException {
+        final int width = options.width;
+        final int halo = (width + EdgeExpansion.margin(width, options) + TILE_SIZE - 1) / TILE_SIZE;
+        RunStats stats = progress.getStats();
+        stats.options = options;
+        // the output of these tiles can change, and it depends on the input one halo further out
+        ArrayList<Long> region = new ArrayList<>(around(changedTiles, halo));
+        for (long key : region)
+            if (!source.isPresent(key)) painted.removeTile(key);   // a removed tile takes its output with it
+        region.removeIf(key -> !source.isPresent(key));
+        region.sort(null);
+        ArrayList<Long> inputKeys = EdgeExpansion.keysWithLayer(source, around(region, halo),
+                options.inputFromSelection);
+
+        progress.start(RunProgress.Phase.SCAN, inputKeys.size());
+        BlockMask input = SeedScanner.scan(source, inputKeys, options.inputFromSelection, EdgeExpansion.CYAN,
+                options.parallel, progress::step);
+        stats.tilesScanned += inputKeys.size();
+        stats.seeds += input.size();
+
+        progress.start(RunProgress.Phase.EXPAND, 0);
+        long[][] output = new long[region.size()][];
+        if (!input.isEmpty()) {
+            try (DistanceField field = EdgeExpansion.expand(input, width, options, source::heights)) {
+                ArrayList<Integer> reached = new ArrayList<>();
+                ArrayList<Long> keys = new ArrayList<>();
+                for (int k = 0; k < region.size(); k++) {
+                    if (!field.tileKeys().contains(region.get(k))) continue;
+                    reached.add(k);
+                    keys.add(region.get(k));
+                }
+                progress.start(RunProgress.Phase.APPLY, keys.size());
+                long[][] sprayed = EdgeExpansion.apply(field, keys, options.dir, EdgeExpansion.sprayer(width,
+                        options), options.parallel, progress::step);
+                for (int i = 0; i < sprayed.length; i++)
+                    output[reached.get(i)] = sprayed[i];
+                long[] ringSizes = new long[width];
+                field.countRings(keys, options.dir::ring, ringSizes);
+                stats.addRings(ringSizes, width);
+            }
+        }
+
+        // only the difference to what was painted before goes onto the map
+        ArrayList<Integer> changed = new ArrayList<>();
+        for (int k = 0; k < region.size(); k++) {
+            long[] before = painted.tileWords(region.get(k));
+            if (before == null ? output[k] != null : output[k] == null || !Arrays.equals(before, output[k]))
+                changed.add(k);
+        }
+        progress.start(RunProgress.Phase.WRITE, changed.size());
+        for (int start = 0; start < changed.size(); start += EdgeExpansion.WRITE_BATCH_TILES) {
+            final List<Integer> batch = changed.subList(start, Math.min(start + EdgeExpansion.WRITE_BATCH_TILES,
+                    changed.size()));
+            source.changes(() -> {
+                for (int k : batch)
+                    patchTile(region.get(k), output[k]);
+            });
+            stats.tilesWritten += batch.size();
+            progress.step(batch.size());
+        }
+        stats.blocksPainted += EdgeExpansion.countBlocks(output);
+    }
+
+    private void patchTile(long key, long[] words) {
+        long[] before = painted.tileWords(key);
+        if (before != null) {
+            long[] gone = new long[BlockMask.WORDS_PER_TILE];
+            for (int i = 0; i < gone.length; i++)
+                gone[i] = before[i] & (words == null ? -1L : ~words[i]);
+            source.erase(key, gone, options.outputAsSelection, EdgeExpansion.CYAN);
+        }
+        if (words != null) source.paint(key, words, options.outputAsSelection, EdgeExpansion.CYAN);
+        painted.putTile(key, words == null ? new long[0] : words.clone());
+    }
+
+    /**
+     * @return the tiles and all tiles up to halo tiles away from them
+     */
+    static Set<Long> around(Collection<Long> tiles, int halo) {
+        Set<Long> around = new HashSet<>();
+        for (long key : tiles) {
+            int tx = BlockMask.tileX(key), ty = BlockMask.tileY(key);
+            for (int x = tx - halo; x <= tx + halo; x++)
+                for (int y = ty - halo; y <= ty + halo; y++)
+                    around.add(BlockMask.tileKey(x, y));
+        }
+        return around;
+    }
+}
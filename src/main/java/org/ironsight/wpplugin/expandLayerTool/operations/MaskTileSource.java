@@ -0,0 +1,118 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * An in-memory stand-in for a dimension, for tests, benchmarks and batch jobs that don't need worldpainter. The
+ * selection and every annotation colour are a {@link BlockMask}. The map has no border, every tile is part of it, and
+ * flat unless heights are set.
+ */
+public class MaskTileSource implements TileSource {
+    private final BlockMask selection = new BlockMask();
+    private final HashMap<Integer, BlockMask> annotations = new HashMap<>();
+    private final HashMap<Long, float[]> heights = new HashMap<>();
+    private final float[] flat = new float[TILE_SIZE * TILE_SIZE];
+
+    /**
+     * @return the selected blocks. live, changes go straight to the source.
+     */
+    public BlockMask selection() {
+        return selection;
+    }
+
+    /**
+     * @return the blocks annotated with this colour. live, changes go straight to the source.
+     */
+    public synchronized BlockMask annotation(int value) {
+        return annotations.computeIfAbsent(value, v -> new BlockMask());
+    }
+
+    /**
+     * @param heights terrain height of every block of the tile, row by row. kept, not copied.
+     */
+    public synchronized void setHeights(long key, float[] heights) {
+        this.heights.put(key, heights);
+    }
+
+    private BlockMask layer(boolean selection, int annotationValue) {
+        return selection ? this.selection : annotation(annotationValue);
+    }
+
+    @Override
+    public synchronized Collection<Long> tileKeys() {
+        Set<Long> keys = new LinkedHashSet<>(selection.tileKeys());
+        for (BlockMask annotation : annotations.values())
+            keys.addAll(annotation.tileKeys());
+        return keys;
+    }
+
+    @Override
+    public boolean isPresent(long key) {
+        return true;
+    }
+
+    @Override
+    public synchronized boolean hasLayer(long key, boolean selection) {
+        if (selection) return this.selection.tileWords(key) != null;
+        for (BlockMask annotation : annotations.values())
+            if (annotation.tileWords(key) != null) return true;
+        return false;
+    }
+
+    @Override
+    public long[] readLayer(long key, boolean selection, int annotationValue) {
+        long[] words = layer(selection, annotationValue).tileWords(key);
+        return words == null ? null : words.clone();
+    }
+
+    @Override
+    public synchronized float[] heights(long key) {
+        return heights.getOrDefault(key, flat);
+    }
+
+    @Override
+    public synchronized void clearLayer(long key, boolean selection) {
+        if (selection) this.selection.removeTile(key);
+        else for (BlockMask annotation : annotations.values())
+            annotation.removeTile(key);
+    }
+
+    @Override
+    public synchronized void paint(long key, long[] words, boolean selection, int annotationValue) {
+        BlockMask layer = layer(selection, annotationValue);
+        long[] merged = layer.tileWords(key);
+        merged = merged == null ? words.clone() : merged.clone();
+        for (int i = 0; i < merged.length; i++)
+            merged[i] |= words[i];
+        layer.putTile(key, merged);
+        if (selection) return;
+        // a block has one annotation colour, painting it takes it away from the others
+        for (Map.Entry<Integer, BlockMask> other : annotations.entrySet()) {
+            long[] otherWords = other.getKey() == annotationValue ? null : other.getValue().tileWords(key);
+            if (otherWords == null) continue;
+            long[] cleared = otherWords.clone();
+            for (int i = 0; i < cleared.length; i++)
+                cleared[i] &= ~words[i];
+            other.getValue().putTile(key, cleared);
+        }
+    }
+
+    @Override
+    public synchronized void erase(long key, long[] words, boolean selection, int annotationValue) {
+        BlockMask layer = layer(selection, annotationValue);
+        long[] erased = layer.tileWords(key);
+        if (erased == null) return;
+        erased = erased.clone();
+        for (int i = 0; i < erased.length; i++)
+            erased[i] &= ~words[i];
+        layer.putTile(key, erased);
+    }
+}
@@ -0,0 +1,46 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.pepsoft.worldpainter.Tile;
+import org.pepsoft.worldpainter.layers.Annotations;
+import org.pepsoft.worldpainter.selection.SelectionBlock;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.WORDS_PER_ROW;
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.WORDS_PER_TILE;
+
+/**
+ * Paints the bitset of one {@link BlockMask} tile onto the output layer, or erases it from there. All blocks are
+ * written through the {@link Tile} API, and the change events of the tile are held back until it is done.
+ */
+class OutputWriter {
+    static void writeTile(Tile tile, long[] words, boolean asSelection, int annotationValue) {
+        write(tile, words, asSelection, annotationValue, true);
+    }
+
+    /**
+     * unselect the blocks, or take the annotation away from the blocks that still have this colour
+     */
+    static void eraseTile(Tile tile, long[] words, boolean asSelection, int annotationValue) {
+        write(tile, words, asSelection, annotationValue, false);
+    }
+
+    private static void write(Tile tile, long[] words, boolean asSelection, int annotationValue, boolean set) {
+        tile.inhibitEvents();
+        try {
+            for (int i = 0; i < WORDS_PER_TILE; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    int x = ((i % WORDS_PER_ROW) << 6) + bit, y = i / WORDS_PER_ROW;
+                    if (asSelection) tile.setBitLayerValue(SelectionBlock.INSTANCE, x, y, set);
+                    else if (set) tile.setLayerValue(Annotations.INSTANCE, x, y, annotationValue);
+                    else if (tile.getLayerValue(Annotations.INSTANCE, x, y) == annotationValue)
+                        tile.setLayerValue(Annotations.INSTANCE, x, y, 0);
+                }
+            }
+        } finally {
+            tile.releaseEvents();
+        }
+    }
+}
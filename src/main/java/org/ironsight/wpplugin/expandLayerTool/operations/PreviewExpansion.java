@@ -0,0 +1,159 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * A coarse look at what a run would paint, without touching the map. The input in a square window of the map is
+ * downsampled, one sample per scale x scale blocks (set if any of its blocks is), and expanded on that grid with the
+ * width divided by the scale. Every sample then shows how likely its ring gets painted instead of a spray, a spray
+ * at this resolution would only be noise.
+ * <p>
+ * The downsampled input is kept until the window or the input layer changes, so changing the width, direction or
+ * gradient only repeats the expansion of a few thousand samples.
+ */
+public class PreviewExpansion {
+    public static final int SIZE = 160;
+    // an input sample that lies in no ring
+    public static final float INPUT = -1f;
+    private final TileSource source;
+    private final int scale;
+    // the downsampled input of the last window, in sample coordinates
+    private BlockMask samples;
+    private int samplesX, samplesY, samplesMargin = -1;
+    private boolean samplesSelection;
+
+    /**
+     * @param scale blocks per sample along each side, a power of two
+     */
+    public PreviewExpansion(TileSource source, int scale) {
+        this.source = source;
+        this.scale = scale;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the chance to be painted per sample of the {@link #SIZE} x {@link #SIZE} window around the centre, row
+     * by row. {@link #INPUT} for input samples that are not in any ring.
+     */
+    public synchronized float[] compute(int centreX, int centreY, EdgeExpansionOptions options) throws IOException {
+        final int rings = (options.width + scale - 1) / scale;
+        final int originX = Math.floorDiv(centreX, scale) - SIZE / 2;
+        final int originY = Math.floorDiv(centreY, scale) - SIZE / 2;
+        EdgeExpansionOptions coarse = options.copy();
+        coarse.parallel = false;
+        coarse.offHeap = false;
+        // a sample has no single height, the preview is always flat
+        coarse.followTerrain = false;
+        BlockMask input = samples(originX, originY, rings + EdgeExpansion.margin(rings, coarse),
+                options.inputFromSelection);
+
+        float[] chances = new float[rings];
+        for (int r = 0; r < rings; r++) {
+            // the middle of the blocks of the full width that fall into this ring
+            float blocks = Math.min(scale, options.width - r * scale);
+            chances[r] = options.gradient.getValue((r * scale + blocks / 2) / options.width, options.interpolation);
+        }
+
+        float[] preview = new float[SIZE * SIZE];
+        if (input.isEmpty()) return preview;
+        try (DistanceField field = EdgeExpansion.expand(input, rings, coarse)) {
+            for (int y = 0; y < SIZE; y++)
+                for (int x = 0; x < SIZE; x++) {
+                    int distance = field.getDistance(originX + x, originY + y);
+                    int ring = options.dir.ring(distance);
+                    if (ring < rings) preview[y * SIZE + x] = chances[ring];
+                    else if (distance < 0) preview[y * SIZE + x] = INPUT;
+                }
+        }
+        return preview;
+    }
+
+    /**
+     * downsample the input of the window plus a margin of samples around it
+     */
+    private BlockMask samples(int originX, int originY, int margin, boolean selection) {
+        if (samples != null && originX == samplesX && originY == samplesY && selection == samplesSelection &&
+                margin <= samplesMargin) return samples;
+
+        final int minX = (originX - margin) * scale, minY = (originY - margin) * scale;
+        final int maxX = (originX + SIZE + margin) * scale - 1, maxY = (originY + SIZE + margin) * scale - 1;
+        ArrayList<Long> keys = new ArrayList<>();
+        for (int tx = minX >> TILE_SIZE_BITS; tx <= maxX >> TILE_SIZE_BITS; tx++)
+            for (int ty = minY >> TILE_SIZE_BITS; ty <= maxY >> TILE_SIZE_BITS; ty++)
+                if (source.hasLayer(BlockMask.tileKey(tx, ty), selection)) keys.add(BlockMask.tileKey(tx, ty));
+        BlockMask input = SeedScanner.scan(source, keys, selection, EdgeExpansion.CYAN, true, () -> {
+        });
+
+        BlockMask downsampled = new BlockMask();
+        for (long tile : input.tileKeys()) {
+            int tileOriginX = BlockMask.tileX(tile) << TILE_SIZE_BITS;
+            int tileOriginY = BlockMask.tileY(tile) << TILE_SIZE_BITS;
+            long[] words = input.tileWords(tile);
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    int x = tileOriginX + ((i % BlockMask.WORDS_PER_ROW) << 6) + bit;
+                    int y = tileOriginY + i / BlockMask.WORDS_PER_ROW;
+                    // the rest of the word falls into the same sample anyway
+                    int sampleEnd = Math.min(64, bit + scale - Math.floorMod(x, scale));
+                    word &= sampleEnd == 64 ? 0 : -1L << sampleEnd;
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+                        downsampled.add(Math.floorDiv(x, scale), Math.floorDiv(y, scale));
+                }
+            }
+        }
+        samples = downsampled;
+        samplesX = originX;
+        samplesY = originY;
+        samplesSelection = selection;
+        samplesMargin = margin;
+        return samples;
+    }
+
+    /**
+     * @return the middle of the tiles that hold the input layer, null if there are none
+     */
+    public int[] centreOfInput(boolean selection) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (long key : source.tileKeys()) {
+            if (!source.hasLayer(key, selection)) continue;
+            minX = Math.min(minX, BlockMask.tileX(key));
+            minY = Math.min(minY, BlockMask.tileY(key));
+            maxX = Math.max(maxX, BlockMask.tileX(key));
+            maxY = Math.max(maxY, BlockMask.tileY(key));
+        }
+        if (minX > maxX) return null;
+        return new int[]{(minX + maxX + 1) << (TILE_SIZE_BITS - 1), (minY + maxY + 1) << (TILE_SIZE_BITS - 1)};
+    }
+
+    /**
+     * forget the downsampled input, the next preview reads it again
+     */
+    public synchronized void invalidate() {
+        samples = null;
+    }
+
+    /**
+     * @return pixels of the preview for an image of {@link #SIZE} x {@link #SIZE}: input dark, painted samples red
+     * with the chance as opacity
+     */
+    public static int[] argb(float[] preview) {
+        int[] pixels = new int[preview.length];
+        for (int i = 0; i < preview.length; i++) {
+            float chance = preview[i];
+            if (chance == INPUT) pixels[i] = 0xFF00484F;
+            else if (chance > 0) pixels[i] = Math.round(Math.min(chance, 1) * 255) << 24 | 0xFF2020;
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,49 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+/**
+ * Java Flight Recorder events of a run, so its phases can be lined up with gc and worldpainter activity in a
+ * recording. Events cost next to nothing while no recording is running. On a jvm without JFR nothing is emitted.
+ * <p>
+ * The events themselves are in FlightRecorderEvents, which is compiled for java 11 from src/main/java11 and only loaded
+ * once JFR is found, so the rest of the plugin still builds and loads for java 8.
+ */
+final class RunEvents {
+    private static final Recorder RECORDER = load();
+
+    private RunEvents() {
+        // Prevent instantiation
+    }
+
+    private static Recorder load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName(RunEvents.class.getPackage().getName() + ".FlightRecorderEvents")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the started event of the phase, null without JFR
+     */
+    static Object beginPhase() {
+        return RECORDER == null ? null : RECORDER.beginPhase();
+    }
+
+    static void endPhase(Object started, RunProgress.Phase phase, int steps) {
+        if (started != null) RECORDER.endPhase(started, phase, steps);
+    }
+
+    static void commitRun(RunStats stats) {
+        if (RECORDER != null) RECORDER.commitRun(stats);
+    }
+
+    interface Recorder {
+        Object beginPhase();
+
+        void endPhase(Object started, RunProgress.Phase phase, int steps);
+
+        void commitRun(RunStats stats);
+    }
+}
@@ -0,0 +1,109 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of a run, shared between the worker threads and the ui. The workers report every finished tile, the ui
+ * polls the current phase and percentage. A cancel request is noticed at the next finished tile, which throws a
+ * {@link CancellationException} out of the run.
+ * <p>
+ * Phase changes also time the phases into the {@link RunStats} of the run and emit them as JFR events.
+ */
+public class RunProgress {
+    private final AtomicInteger done = new AtomicInteger();
+    private volatile Phase phase = Phase.SCAN;
+    private volatile int total;
+    private volatile boolean cancelled;
+    private final RunStats stats = new RunStats();
+    // only touched by the thread of the run
+    private boolean inPhase;
+    private long phaseStart;
+    private Object phaseEvent;
+
+    /**
+     * start the next phase
+     *
+     * @param total amount of steps in this phase, 0 if unknown
+     */
+    public void start(Phase phase, int total) {
+        checkCancelled();
+        endPhase();
+        this.phase = phase;
+        this.total = total;
+        done.set(0);
+        inPhase = true;
+        phaseStart = System.nanoTime();
+        phaseEvent = RunEvents.beginPhase();
+    }
+
+    /**
+     * the run is over, successful or not. closes the last phase and emits the run.
+     */
+    public void finish() {
+        endPhase();
+        RunEvents.commitRun(stats);
+    }
+
+    private void endPhase() {
+        if (!inPhase) return;
+        stats.addPhase(phase, System.nanoTime() - phaseStart);
+        RunEvents.endPhase(phaseEvent, phase, done.get());
+        inPhase = false;
+        phaseEvent = null;
+    }
+
+    /**
+     * @return timings and counters of the run. complete once the run is finished.
+     */
+    public RunStats getStats() {
+        return stats;
+    }
+
+    /**
+     * one step, usually one tile, is done
+     */
+    public void step() {
+        step(1);
+    }
+
+    public void step(int steps) {
+        advance(steps);
+        checkCancelled();
+    }
+
+    /**
+     * steps are done, without looking for a cancel. for work that must not stop halfway.
+     */
+    public void advance(int steps) {
+        done.addAndGet(steps);
+    }
+
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException(phase + " cancelled");
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return progress of the current phase in percent, -1 if unknown
+     */
+    public int getPercent() {
+        int total = this.total;
+        return total <= 0 ? -1 : (int) Math.min(100, done.get() * 100L / total);
+    }
+
+    public enum Phase {
+        SCAN, EXPAND, APPLY, STREAM, WRITE
+    }
+}
@@ -0,0 +1,104 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * What a run did and where its time went: wall time per phase and counters of the blocks that went through it. Filled
+ * in by the thread of the run, read once the run is over.
+ */
+public class RunStats {
+    private final EnumMap<RunProgress.Phase, Long> phaseNanos = new EnumMap<>(RunProgress.Phase.class);
+    EdgeExpansionOptions options;
+    long tilesScanned;
+    long seeds;
+    long[] blocksPerRing = new long[0];
+    long blocksPainted;
+    long tilesWritten;
+    boolean cachedField;
+
+    void addPhase(RunProgress.Phase phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    void addRings(long[] ringSizes, int rings) {
+        if (blocksPerRing.length < rings) blocksPerRing = Arrays.copyOf(blocksPerRing, rings);
+        for (int i = 0; i < Math.min(rings, ringSizes.length); i++)
+            blocksPerRing[i] += ringSizes[i];
+    }
+
+    /**
+     * @return wall time of the phase in milliseconds, -1 if the run never got to it
+     */
+    public long getPhaseMillis(RunProgress.Phase phase) {
+        Long nanos = phaseNanos.get(phase);
+        return nanos == null ? -1 : nanos / 1000000;
+    }
+
+    public long getTotalMillis() {
+        long nanos = 0;
+        for (long phase : phaseNanos.values())
+            nanos += phase;
+        return nanos / 1000000;
+    }
+
+    public long getTilesScanned() {
+        return tilesScanned;
+    }
+
+    public long getBlocksScanned() {
+        return tilesScanned * TILE_SIZE * TILE_SIZE;
+    }
+
+    public long getSeeds() {
+        return seeds;
+    }
+
+    /**
+     * @return blocks in every ring, ring 0 is the start of the gradient
+     */
+    public long[] getBlocksPerRing() {
+        return blocksPerRing.clone();
+    }
+
+    /**
+     * @return the largest ring, the peak size of the expansion frontier
+     */
+    public long getPeakFrontier() {
+        long peak = 0;
+        for (long ring : blocksPerRing)
+            peak = Math.max(peak, ring);
+        return peak;
+    }
+
+    public long getBlocksPainted() {
+        return blocksPainted;
+    }
+
+    public long getTilesWritten() {
+        return tilesWritten;
+    }
+
+    public boolean isCachedField() {
+        return cachedField;
+    }
+
+    /**
+     * @return one line per phase, then the counters
+     */
+    public String summary() {
+        StringBuilder text = new StringBuilder();
+        for (RunProgress.Phase phase : RunProgress.Phase.values()) {
+            long millis = getPhaseMillis(phase);
+            if (millis >= 0) text.append(phase.name().toLowerCase()).append(": ").append(millis).append(" ms\n");
+        }
+        text.append("total: ").append(getTotalMillis()).append(" ms\n");
+        text.append(String.format("scanned %,d blocks, %,d seeds%n", getBlocksScanned(), seeds));
+        text.append(String.format("%d rings%s, peak %,d blocks%n", blocksPerRing.length, cachedField ? " (cached)" :
+                "", getPeakFrontier()));
+        text.append(String.format("painted %,d blocks in %,d tiles", blocksPainted, tilesWritten));
+        return text.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Collects the blocks of the input layer into a {@link BlockMask}. Every tile is read on its own, optionally in
+ * parallel, straight into its bitset. Every read tile is reported to {@code tileDone}, which may throw to stop the
+ * scan after the tiles in flight.
+ */
+class SeedScanner {
+    static BlockMask scan(TileSource source, List<Long> keys, boolean fromSelection, int annotationMatch,
+                          boolean parallel, Runnable tileDone) {
+        long[][] words = new long[keys.size()][];
+        IntStream indices = IntStream.range(0, keys.size());
+        if (parallel) indices = indices.parallel();
+        indices.forEach(i -> {
+            words[i] = source.readLayer(keys.get(i), fromSelection, annotationMatch);
+            tileDone.run();
+        });
+
+        BlockMask seeds = new BlockMask();
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != null) seeds.putTile(keys.get(i), words[i]);
+        }
+        return seeds;
+    }
+}
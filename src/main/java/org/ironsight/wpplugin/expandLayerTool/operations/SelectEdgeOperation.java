@@ -2,12 +2,11 @@ package org.ironsight.wpplugin.expandLayerTool.operations;
 
 import org.ironsight.wpplugin.expandLayerTool.Gui.GradientDisplay;
 import org.ironsight.wpplugin.expandLayerTool.Gui.GradientEditor;
-import org.ironsight.wpplugin.expandLayerTool.pathing.RingFinder;
-import org.pepsoft.worldpainter.Tile;
-import org.pepsoft.worldpainter.layers.Annotations;
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.PyramidDistanceField;
+import org.ironsight.wpplugin.expandLayerTool.pathing.RingExpansion;
+import org.pepsoft.worldpainter.WorldPainterView;
 import org.pepsoft.worldpainter.operations.MouseOrTabletOperation;
-import org.pepsoft.worldpainter.selection.SelectionBlock;
-import org.pepsoft.worldpainter.selection.SelectionChunk;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -15,24 +14,56 @@ import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyVetoException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.util.*;
-
-import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
-import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class SelectEdgeOperation extends MouseOrTabletOperation {
-    static final int CYAN = 9;
     private static final String NAME = "Select Edge Operation";
     private static final String DESCRIPTION = "<html>Select the edge of all blocks of th laye and expand/reduce them " +
             "<br>" + "with a spraypaint gradient, then paint it on the map as output layer.</html>";
     private static final String ID = "select_edge_operation";
-    private final SelectEdgeOptions options = new SelectEdgeOptions();
-    Random r = new Random();
+    private static final int LIVE_DELAY_MS = 300;
+    private final EdgeExpansionOptions options = new EdgeExpansionOptions();
+    private final EdgeExpansion expansion = new EdgeExpansion();
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JButton runButton = new JButton("Run");
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JLabel statsLabel = new JLabel("no run yet");
+    // progress of the run in the background, null while idle. only touched on the edt.
+    private RunProgress running;
+    private final javax.swing.Timer progressTimer = new javax.swing.Timer(100, e -> showProgress(running, null));
+    // auto update: the live expansion and the watcher of its input, null while off. only touched on the edt.
+    private LiveExpansion live;
+    private InputWatcher watcher;
+    private final JCheckBox autoUpdate = new JCheckBox("auto update");
+    // brush radius of a click on the map, 0 if clicks do nothing
+    private int brushRadius = 0;
+    // the stroke that is being painted, null between strokes
+    private BrushExpansion stroke;
+    // a dab is expanded in the background. the dabs that come in meanwhile wait for it, merged into one footprint
+    // as long as they erase or paint alike.
+    private boolean dabRunning;
+    private final ArrayDeque<PendingDab> pendingDabs = new ArrayDeque<>();
+    private final JLabel previewLabel = new JLabel();
+    // blocks per sample of the preview, 0 while it is off
+    private int previewScale = 0;
+    private PreviewExpansion preview;
+    private org.pepsoft.worldpainter.Dimension previewDimension;
+    private boolean previewRunning, previewPending;
+    // the preview shows the area that is visible in the editor. without a view it shows the area around the last
+    // click on the map, or around the input before the first click.
+    private Point previewCentre;
+    // waits for a stroke to be over before updating
+    private final javax.swing.Timer liveTimer = new javax.swing.Timer(LIVE_DELAY_MS, e -> updateLive());
 
     public SelectEdgeOperation() {
         super(NAME, DESCRIPTION, ID);
+        liveTimer.setRepeats(false);
     }
 
     @Override
@@ -47,7 +78,7 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
                 JLabel label = new JLabel("width:");
                 panel.add(label);
                 // Create a SpinnerNumberModel for numeric input
-                SpinnerNumberModel model = new SpinnerNumberModel(options.width, 1, 100, 1f); // initialValue, min,
+                SpinnerNumberModel model = new SpinnerNumberModel(options.width, 1, 2000, 1f); // initialValue, min,
                 // max, step
                 JSpinner spinner = new JSpinner(model);
                 // Add a change listener to capture value changes
@@ -56,6 +87,7 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
                     public void stateChanged(ChangeEvent e) {
                         // Retrieve the current value (im to lazy to figure out when its a double or a float)
                         options.width = ((Double) spinner.getValue()).intValue();
+                        updatePreview();
                     }
                 });
                 spinner.setToolTipText("how wide the output edge should be");
@@ -63,20 +95,30 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
             }
         }
 
+        {   // BRUSH RADIUS
+            SpinnerNumberModel model = new SpinnerNumberModel(brushRadius, 0, 1000, 1);
+            JSpinner spinner = new JSpinner(model);
+            spinner.addChangeListener(e -> brushRadius = ((Number) spinner.getValue()).intValue());
+            spinner.setToolTipText("click or drag on the map to expand only under the brush, with ctrl to erase the " +
+                    "output there. 0 turns the brush off.");
+            panel.add(new JLabel("brush radius:"));
+            panel.add(spinner);
+        }
+
         {
             // Create a JComboBox with options
             String[] listOptions = {"Outwards", "Inwards", "Both", "Out and keep"};
             JComboBox<String> dropdown = new JComboBox<>(listOptions);
 
 // Map the list options to the corresponding directions
-            Map<String, SelectEdgeOptions.DIRECTION> directionMap = new HashMap<>();
-            directionMap.put("Outwards", SelectEdgeOptions.DIRECTION.OUTWARD);
-            directionMap.put("Inwards", SelectEdgeOptions.DIRECTION.INWARD);
-            directionMap.put("Both", SelectEdgeOptions.DIRECTION.BOTH);
-            directionMap.put("Out and keep", SelectEdgeOptions.DIRECTION.OUT_AND_KEEP);
+            Map<String, EdgeExpansionOptions.Direction> directionMap = new HashMap<>();
+            directionMap.put("Outwards", EdgeExpansionOptions.Direction.OUTWARD);
+            directionMap.put("Inwards", EdgeExpansionOptions.Direction.INWARD);
+            directionMap.put("Both", EdgeExpansionOptions.Direction.BOTH);
+            directionMap.put("Out and keep", EdgeExpansionOptions.Direction.OUT_AND_KEEP);
 
 // Reverse map to find the key by value
-            Map<SelectEdgeOptions.DIRECTION, String> reverseMap = new HashMap<>();
+            Map<EdgeExpansionOptions.Direction, String> reverseMap = new HashMap<>();
             directionMap.forEach((key, value) -> reverseMap.put(value, key));
 
 // Add an action listener to handle option selection
@@ -84,6 +126,7 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
                 String selectedOption = (String) dropdown.getSelectedItem();
                 if (selectedOption != null) {
                     options.dir = directionMap.get(selectedOption);
+                    updatePreview();
                 }
             });
 
@@ -95,6 +138,15 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
             panel.add(dropdown);
         }
 
+        {   // ENGINE
+            JComboBox<RingExpansion.Engine> dropdown = new JComboBox<>(RingExpansion.Engine.values());
+            dropdown.setSelectedItem(options.engine);
+            dropdown.addActionListener(e -> options.engine = (RingExpansion.Engine) dropdown.getSelectedItem());
+            dropdown.setToolTipText("how the rings are computed. all engines give the same result.");
+            panel.add(new JLabel("engine:"));
+            panel.add(dropdown);
+        }
+
         {   // INPUT
             JButton button = new JButton();
             button.setText(options.inputFromSelection ? "selection" : "cyan annotation");
@@ -103,6 +155,7 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
                 public void actionPerformed(ActionEvent e) {
                     options.inputFromSelection = !options.inputFromSelection;
                     button.setText(options.inputFromSelection ? "selection" : "cyan annotation");
+                    updatePreview();
                 }
             });
             button.setToolTipText("the layer to be used as an input");
@@ -139,6 +192,35 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
             button3.setToolTipText("the gradient that is used when the layer is expanded.");
             panel.add(button3);
         }
+        {   // INTERPOLATION
+            JComboBox<Gradient.Interpolation> dropdown = new JComboBox<>(Gradient.Interpolation.values());
+            dropdown.setSelectedItem(options.interpolation);
+            dropdown.addActionListener(e -> {
+                options.interpolation = (Gradient.Interpolation) dropdown.getSelectedItem();
+                updatePreview();
+            });
+            dropdown.setToolTipText("how the gradient blends between its points");
+            panel.add(new JLabel("blend:"));
+            panel.add(dropdown);
+        }
+        {   // PATTERN
+            JComboBox<DitherTexture.Pattern> dropdown = new JComboBox<>(DitherTexture.Pattern.values());
+            dropdown.setSelectedItem(options.pattern);
+            dropdown.addActionListener(e -> options.pattern = (DitherTexture.Pattern) dropdown.getSelectedItem());
+            dropdown.setToolTipText("random spray, or an even dither texture that repeats every 64 blocks");
+            panel.add(new JLabel("pattern:"));
+            panel.add(dropdown);
+        }
+        {   // SEED
+            // boxed, the primitive arguments would pick the double constructor and round large seeds
+            SpinnerNumberModel model = new SpinnerNumberModel(Long.valueOf(options.seed), Long.valueOf(0),
+                    Long.valueOf(Long.MAX_VALUE), Long.valueOf(1));
+            JSpinner spinner = new JSpinner(model);
+            spinner.addChangeListener(e -> options.seed = ((Number) spinner.getValue()).longValue());
+            spinner.setToolTipText("the same seed always sprays the same blocks");
+            panel.add(new JLabel("seed:"));
+            panel.add(spinner);
+        }
         {   // CLEAN OUTPUT
             JCheckBox checkBox = new JCheckBox("clear output layer");
             checkBox.addActionListener(new ActionListener() {
@@ -150,6 +232,106 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
             checkBox.setSelected(options.cleanOutput);
             panel.add(checkBox);
         }
+        {   //PARALLEL
+            JCheckBox checkBox = new JCheckBox("parallel");
+            checkBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    options.parallel = checkBox.isSelected();
+                }
+            });
+            checkBox.setSelected(options.parallel);
+            checkBox.setToolTipText("expand the map in parallel shards on all cores, gives the same result");
+            panel.add(checkBox);
+        }
+        {   //SPARSE SPRAY
+            JCheckBox checkBox = new JCheckBox("sparse spray");
+            checkBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    options.sparseSpray = checkBox.isSelected();
+                }
+            });
+            checkBox.setSelected(options.sparseSpray);
+            checkBox.setToolTipText("skip straight to the next painted block in rings with a low chance. same " +
+                    "density, but a different random pattern than the gradient preview shows.");
+            panel.add(checkBox);
+        }
+        {   //STREAMING
+            JCheckBox checkBox = new JCheckBox("stream");
+            checkBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    options.streaming = checkBox.isSelected();
+                }
+            });
+            checkBox.setSelected(options.streaming);
+            checkBox.setToolTipText("for maps too big for memory: expand a few tile rows at a time and keep the " +
+                    "result in a scratch file. slower, gives the same result.");
+            panel.add(checkBox);
+        }
+        {   //OFF HEAP
+            JCheckBox checkBox = new JCheckBox("off-heap distances");
+            checkBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    options.offHeap = checkBox.isSelected();
+                }
+            });
+            checkBox.setSelected(options.offHeap);
+            checkBox.setToolTipText("keep the distances in a memory mapped scratch file instead of the java heap. " +
+                    "less garbage collection, allows fields bigger than memory.");
+            panel.add(checkBox);
+            // the checkboxes above fill their rows two by two, the settings below start a row each
+            panel.add(new JLabel());
+        }
+        {   //MULTI RESOLUTION
+            JCheckBox checkBox = new JCheckBox("multi-resolution");
+            checkBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    options.multiResolution = checkBox.isSelected();
+                    updatePreview();
+                }
+            });
+            checkBox.setSelected(options.multiResolution);
+            checkBox.setToolTipText("for widths above " + EdgeExpansion.MULTI_RESOLUTION_ABOVE + ": exact distances " +
+                    "only near the edge, further out they come from the chunk grid. much faster, but far out the " +
+                    "edge can be off by up to " + PyramidDistanceField.SLACK + " blocks.");
+            panel.add(new JLabel("far field:"));
+            panel.add(checkBox);
+        }
+        {   //FOLLOW TERRAIN
+            JCheckBox checkBox = new JCheckBox("follow terrain");
+            checkBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    options.followTerrain = checkBox.isSelected();
+                }
+            });
+            checkBox.setSelected(options.followTerrain);
+            checkBox.setToolTipText("the edge spreads further downhill, less far uphill and stops at cliffs. slower " +
+                    "than flat, the preview stays flat.");
+            panel.add(new JLabel("terrain:"));
+            panel.add(checkBox);
+
+            SpinnerNumberModel model = new SpinnerNumberModel(options.cliffHeight, 0.5, 64, 0.5);
+            JSpinner spinner = new JSpinner(model);
+            spinner.addChangeListener(e -> options.cliffHeight = ((Number) spinner.getValue()).floatValue());
+            spinner.setToolTipText("with follow terrain: a step between two blocks that climbs or drops more than " +
+                    "this is a cliff, the edge does not cross it");
+            panel.add(new JLabel("cliff height:"));
+            panel.add(spinner);
+        }
+        {   //AUTO UPDATE
+            for (ActionListener listener : autoUpdate.getActionListeners())
+                autoUpdate.removeActionListener(listener);
+            autoUpdate.addActionListener(e -> setLive(autoUpdate.isSelected()));
+            autoUpdate.setSelected(live != null);
+            autoUpdate.setToolTipText("keep the output up to date while the input is painted, only the tiles " +
+                    "around a change are expanded again. uses the options from when it was turned on.");
+            panel.add(autoUpdate);
+        }
         {   //CLEAN INPUT
             JCheckBox checkBox = new JCheckBox("clear input layer");
             checkBox.addActionListener(new ActionListener() {
@@ -162,6 +344,21 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
             panel.add(checkBox);
         }
 
+        {   // PREVIEW
+            final int[] scales = {0, 4, 16};
+            JComboBox<String> dropdown = new JComboBox<>(new String[]{"off", "4x4 blocks", "chunks"});
+            for (int i = 0; i < scales.length; i++)
+                if (scales[i] == previewScale) dropdown.setSelectedIndex(i);
+            dropdown.addActionListener(e -> {
+                previewScale = scales[dropdown.getSelectedIndex()];
+                updatePreview();
+            });
+            dropdown.setToolTipText("a coarse preview of the output around the last click on the map, updated when " +
+                    "the settings change. nothing is painted until you press run.");
+            panel.add(new JLabel("preview:"));
+            panel.add(dropdown);
+        }
+
         {   //HELP BUTTON
             JButton button3 = new JButton("Help");
             // Add action listeners to handle button click events
@@ -186,16 +383,31 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
         }
 
         {   //EXECUTE BUTTON
-            JButton button3 = new JButton("Run");
-            // Add action listeners to handle button click events
-            button3.addActionListener(new ActionListener() {
+            for (ActionListener listener : runButton.getActionListeners())
+                runButton.removeActionListener(listener);
+            runButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
                     run();
                 }
             });
-            button3.setToolTipText("execute the tool operation and place down the expanded output layer");
-            panel.add(button3);
+            runButton.setEnabled(running == null && live == null);
+            runButton.setToolTipText("execute the tool operation and place down the expanded output layer");
+            panel.add(runButton);
+        }
+        {   //PROGRESS AND CANCEL
+            progressBar.setStringPainted(true);
+            if (running == null) showProgress(null, "idle");
+            panel.add(progressBar);
+            for (ActionListener listener : cancelButton.getActionListeners())
+                cancelButton.removeActionListener(listener);
+            cancelButton.addActionListener(e -> {
+                if (running != null) running.cancel();
+            });
+            cancelButton.setEnabled(running != null);
+            cancelButton.setToolTipText("stop the run after the tiles in progress. the map is only changed once " +
+                    "everything is computed, and once it is written to the run can't be stopped anymore.");
+            panel.add(cancelButton);
         }
 
         for (Component p : panel.getComponents()) {
@@ -215,7 +427,11 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
         JLabel text = new JLabel(DESCRIPTION);
         main.add(text);
         main.add(panel);
-        main.setPreferredSize(new Dimension(200, 400));
+        statsLabel.setToolTipText("timings and counters of the last run");
+        main.add(statsLabel);
+        previewLabel.setToolTipText("input dark, output red. the more opaque, the more likely a block is painted.");
+        main.add(previewLabel);
+        main.setPreferredSize(new Dimension(200, 880));
         return main;
     }
 
@@ -227,6 +443,8 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
 
         // Create the PixelGrid instance with the gradient
         GradientDisplay pixelGrid = new GradientDisplay(options.gradient);
+        pixelGrid.setInterpolation(options.interpolation);
+        pixelGrid.setPattern(options.pattern, options.seed);
         // Create the JFrame to render the PixelGrid
         JFrame frame = new JFrame("Pixel Grid with Gradient");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -239,6 +457,7 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
         gridPanel.add(new GradientEditor(options.gradient, pixelGrid::setGradient, grad -> {
             this.options.gradient = grad;
             dialog.dispose();
+            updatePreview();
         }));
 
         // Add components to the dialog
@@ -256,129 +475,281 @@ public class SelectEdgeOperation extends MouseOrTabletOperation {
 
     }
 
-    private void run() {
-        this.getDimension().setEventsInhibited(true);
+    /**
+     * the dimension of the editor. changes are made on the edt, and are not seen by the watcher if one is given.
+     */
+    private TileSource editorSource(InputWatcher watcher) {
+        return new DimensionTileSource(getDimension()) {
+            @Override
+            public void changes(Runnable changes) throws InterruptedException {
+                try {
+                    SwingUtilities.invokeAndWait(() -> {
+                        if (watcher != null) watcher.setIgnoring(true);
+                        try {
+                            super.changes(changes);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            if (watcher != null) watcher.setIgnoring(false);
+                        }
+                    });
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        };
+    }
 
-        int annotationMatch = CYAN;
+    /**
+     * run the expansion on a worker thread. the map is changed on the edt in batches of tiles, so worldpainter stays
+     * responsive and can be used to cancel the run.
+     */
+    private void run() {
+        if (running != null || live != null) return;
+        // the options panel stays usable during the run, so the run works on a copy
+        final EdgeExpansionOptions options = this.options.copy();
+        final TileSource source = editorSource(null);
+        runInBackground(progress -> expansion.run(source, options, progress));
+    }
 
-        LinkedList<Point> matches = new LinkedList<>();
+    private interface BackgroundRun {
+        void run(RunProgress progress) throws Exception;
+    }
 
-        Iterator<? extends Tile> t = getDimension().getTiles().iterator();
-        while (t.hasNext()) {
-            Tile tile = t.next();
-            if (options.cleanOutput) {
-                if (options.outputAsSelection) {
-                    tile.clearLayerData(SelectionBlock.INSTANCE);
-                    tile.clearLayerData(SelectionChunk.INSTANCE);
-                } else {
-                    tile.clearLayerData(Annotations.INSTANCE);
-                }
+    private void runInBackground(BackgroundRun job) {
+        final RunProgress progress = new RunProgress();
+        running = progress;
+        runButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        progressTimer.start();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                job.run(progress);
+                return null;
             }
-            if ((options.inputFromSelection && tile.hasLayer(SelectionBlock.INSTANCE) || tile.hasLayer(SelectionChunk.INSTANCE)) || tile.hasLayer(Annotations.INSTANCE)) {
-                for (int xInTile = 0; xInTile < TILE_SIZE; xInTile++) {
-                    for (int yInTile = 0; yInTile < TILE_SIZE; yInTile++) {
-                        final int x = xInTile + (tile.getX() << TILE_SIZE_BITS), y =
-                                yInTile + (tile.getY() << TILE_SIZE_BITS);
-                        if (options.inputFromSelection) {
-                            if (tile.getBitLayerValue(SelectionBlock.INSTANCE, xInTile, yInTile) || getDimension().getBitLayerValueAt(SelectionChunk.INSTANCE, x, y))
-                                matches.add(new Point(x, y));
-                        } else {
-                            int annotation = tile.getLayerValue(Annotations.INSTANCE, xInTile, yInTile);
-                            if (annotation == annotationMatch) {
-                                matches.add(new Point(x, y));
-                            }
-                        }
 
-                    }
-                }
-                if (options.cleanInput) {
-                    if (options.inputFromSelection) {
-                        tile.clearLayerData(SelectionBlock.INSTANCE);
-                        tile.clearLayerData(SelectionChunk.INSTANCE);
+            @Override
+            protected void done() {
+                running = null;
+                progressTimer.stop();
+                runButton.setEnabled(live == null);
+                cancelButton.setEnabled(false);
+                String status = "done";
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    status = "interrupted";
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        status = "cancelled";
                     } else {
-                        tile.clearLayerData(Annotations.INSTANCE);
+                        status = "failed";
+                        e.getCause().printStackTrace();
+                        JOptionPane.showMessageDialog(SwingUtilities.getRoot(progressBar),
+                                "Expanding the layer failed: " + e.getCause(), "Error", JOptionPane.ERROR_MESSAGE);
                     }
                 }
+                showProgress(null, status);
+                showStats(progress.getStats());
+                if (preview != null) preview.invalidate();
+                updatePreview();
+                // a cancelled or failed live update leaves its tiles behind, they are expanded again next time
+                if (live != null && !"done".equals(status)) setLive(false);
+                if (watcher != null && watcher.hasChanged()) liveTimer.restart();
             }
-        }
+        }.execute();
+    }
 
-        HashMap<Point, Float> edge = new HashMap<>(matches.size());
-        for (Point p : matches) {
-            edge.put(p, 1f);
+    /**
+     * turn auto update on or off. turning it on expands the whole map once.
+     */
+    private void setLive(boolean on) {
+        autoUpdate.setSelected(on);
+        if (!on) {
+            liveTimer.stop();
+            if (watcher != null) watcher.detach();
+            watcher = null;
+            live = null;
+            runButton.setEnabled(running == null);
+            return;
         }
-        int amountRings = options.width;
-
-        RingFinder start = new RingFinder(edge, 3);
-
-        Set<Point> restrictions = new HashSet<>();
-        switch (options.dir) {
-            case BOTH:
-                //no restrictions
-                edge = start.ring(1);
-                break;
-            case OUTWARD:
-                edge = start.ring(1);
-                restrictions = start.ring(0).keySet();
-                break;
-            case INWARD:
-                edge = start.ring(1);   //initial first outer layer
-                restrictions = start.ring(2).keySet(); //initial second outwards layer
+        if (live != null) return;
+        if (options.inputFromSelection == options.outputAsSelection || running != null) {
+            autoUpdate.setSelected(false);
+            JOptionPane.showMessageDialog(SwingUtilities.getRoot(autoUpdate), running != null ? "Wait for the " +
+                    "run to finish." : "Auto update needs different input and output layers.", "Auto update",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        watcher = new InputWatcher(getDimension(), options.inputFromSelection, options.followTerrain,
+                () -> liveTimer.restart());
+        watcher.attach();
+        final LiveExpansion started = new LiveExpansion(editorSource(watcher), options);
+        live = started;
+        runInBackground(started::start);
+    }
 
-                //walk inwards once
-                start = new RingFinder(edge, 1, restrictions);
-                restrictions = edge.keySet();
-                edge = start.ring(1);   //first inwards layer
+    /**
+     * expand the tiles changed since the last update, unless a run is still going on. that run picks them up once it
+     * is done.
+     */
+    private void updateLive() {
+        if (live == null || running != null || !watcher.hasChanged()) return;
+        final LiveExpansion current = live;
+        final Set<Long> changed = watcher.takeChanged();
+        runInBackground(progress -> current.update(changed, progress));
+    }
 
-                break;
-            case OUT_AND_KEEP:
-                //edge stays the same
-                //no restrictions
-                break;
+    /**
+     * compute the preview on a worker thread. changes while it is computed lead to one more pass once it is done.
+     */
+    private void updatePreview() {
+        if (previewScale == 0 || getDimension() == null) {
+            previewLabel.setIcon(null);
+            return;
         }
-        start = new RingFinder(edge, amountRings, restrictions);
-
-        int totalWidth = options.width;
-        for (int w = 0; w < amountRings; w++) {
-            float chance = options.gradient.getValue((float) w / totalWidth);
-            applyWithStrength(start.ring(w).keySet(), chance);
+        if (previewRunning) {
+            previewPending = true;
+            return;
+        }
+        if (preview == null || preview.getScale() != previewScale || previewDimension != getDimension()) {
+            previewDimension = getDimension();
+            preview = new PreviewExpansion(new DimensionTileSource(previewDimension), previewScale);
         }
+        final PreviewExpansion current = preview;
+        final EdgeExpansionOptions options = this.options.copy();
+        WorldPainterView view = getView();
+        Point viewCentre = view == null ? null : view.getViewLocation();
+        final Point centre = viewCentre != null ? viewCentre : previewCentre;
+        previewRunning = true;
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                int[] at = centre != null ? new int[]{centre.x, centre.y} :
+                        current.centreOfInput(options.inputFromSelection);
+                float[] samples = at == null ? new float[PreviewExpansion.SIZE * PreviewExpansion.SIZE] :
+                        current.compute(at[0], at[1], options);
+                BufferedImage image = new BufferedImage(PreviewExpansion.SIZE, PreviewExpansion.SIZE,
+                        BufferedImage.TYPE_INT_ARGB);
+                image.setRGB(0, 0, PreviewExpansion.SIZE, PreviewExpansion.SIZE, PreviewExpansion.argb(samples), 0,
+                        PreviewExpansion.SIZE);
+                return image;
+            }
+
+            @Override
+            protected void done() {
+                previewRunning = false;
+                try {
+                    previewLabel.setIcon(previewScale == 0 ? null : new ImageIcon(get()));
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    previewLabel.setIcon(null);
+                }
+                if (previewPending) {
+                    previewPending = false;
+                    updatePreview();
+                }
+            }
+        }.execute();
+    }
 
-        this.getDimension().setEventsInhibited(false);
+    private void showStats(RunStats stats) {
+        statsLabel.setText("<html>" + stats.summary().replace("\n", "<br>") + "</html>");
+        long[] rings = stats.getBlocksPerRing();
+        StringBuilder perRing = new StringBuilder("<html>blocks per ring:");
+        for (int i = 0; i < Math.min(rings.length, 32); i++)
+            perRing.append("<br>").append(i).append(": ").append(rings[i]);
+        if (rings.length > 32) perRing.append("<br>...");
+        statsLabel.setToolTipText(perRing.append("</html>").toString());
     }
 
-    private void applyWithStrength(Collection<Point> points, float strength) {
-        for (Point p : points) {
-            if (strength > r.nextFloat()) {
-                if (options.outputAsSelection)
-                    getDimension().setBitLayerValueAt(SelectionBlock.INSTANCE, p.x, p.y, true);
-                else getDimension().setLayerValueAt(Annotations.INSTANCE, p.x, p.y, CYAN);
-            }
+    private void showProgress(RunProgress progress, String status) {
+        if (progress == null) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(0);
+            progressBar.setString(status);
+            return;
         }
+        // a run that started writing always finishes
+        cancelButton.setEnabled(progress.getPhase() != RunProgress.Phase.WRITE);
+        int percent = progress.getPercent();
+        progressBar.setIndeterminate(percent < 0);
+        progressBar.setValue(Math.max(percent, 0));
+        progressBar.setString(progress.getPhase().name().toLowerCase() + (percent < 0 ? "" : " " + percent + "%"));
     }
 
     @Override
     protected void deactivate() {
-
+        setLive(false);
+        stroke = null;
+        pendingDabs.clear();
     }
 
+    /**
+     * one dab of the brush. the input is read once per stroke, so a stroke does not feed on its own output. the dab is
+     * expanded in the background, a wide expansion would freeze the editor.
+     */
     @Override
-    protected void tick(int i, int i1, boolean b, boolean b1, float v) {
-
+    protected void tick(int centreX, int centreY, boolean inverse, boolean first, float dynamicLevel) {
+        // the view may have moved since the preview was drawn
+        if (first) {
+            previewCentre = new Point(centreX, centreY);
+            updatePreview();
+        }
+        // a run or auto update is writing the output already
+        if (brushRadius <= 0 || running != null || live != null) return;
+        if (first || stroke == null)
+            stroke = new BrushExpansion(new DimensionTileSource(getDimension()), options);
+        PendingDab last = pendingDabs.peekLast();
+        if (last == null || last.stroke != stroke || last.erase != inverse)
+            pendingDabs.add(last = new PendingDab(stroke, inverse));
+        BrushExpansion.addDisc(last.footprint, centreX, centreY, brushRadius);
+        if (!dabRunning) dab(pendingDabs.poll());
+    }
 
+    /**
+     * dabs of a stroke that wait for the one that is being expanded
+     */
+    private static final class PendingDab {
+        final BrushExpansion stroke;
+        final BlockMask footprint = new BlockMask();
+        final boolean erase;
+
+        PendingDab(BrushExpansion stroke, boolean erase) {
+            this.stroke = stroke;
+            this.erase = erase;
+        }
     }
 
-    private static class SelectEdgeOptions {
-        int width = 3;
-        DIRECTION dir = DIRECTION.OUTWARD;
-        boolean cleanOutput = false;
-        boolean cleanInput = false;
-        boolean outputAsSelection = true;
-        boolean inputFromSelection = false;
-        Gradient gradient = new Gradient(new float[]{0.01f, 0.15f, 0.25f, 0.5f, 1f}, new float[]{1f, 0.4f, 0.2f, 0.1f
-                , 0.03f});
+    /**
+     * expand a dab in the background and paint it on the edt, then the dabs that came in meanwhile
+     */
+    private void dab(PendingDab dab) {
+        dabRunning = true;
+        final BrushExpansion brush = dab.stroke;
+        new SwingWorker<BrushExpansion.Dab, Void>() {
+            @Override
+            protected BrushExpansion.Dab doInBackground() throws Exception {
+                return brush.expand(dab.footprint, dab.erase);
+            }
 
-        enum DIRECTION {
-            OUTWARD, INWARD, BOTH, OUT_AND_KEEP
-        }
+            @Override
+            protected void done() {
+                dabRunning = false;
+                try {
+                    // a run or auto update that started meanwhile writes the output itself
+                    if (running == null && live == null) brush.paint(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    if (stroke == brush) stroke = null;
+                    pendingDabs.removeIf(pending -> pending.stroke == brush);
+                }
+                if (!pendingDabs.isEmpty()) dab(pendingDabs.poll());
+            }
+        }.execute();
     }
 }
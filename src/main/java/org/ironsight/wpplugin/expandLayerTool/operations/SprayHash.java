@@ -0,0 +1,23 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.mix;
+
+/**
+ * Stateless random numbers for the spray: the value of a block only depends on the seed and its coordinates. The
+ * same seed always paints the same blocks, in any order and on any thread.
+ */
+public final class SprayHash {
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private SprayHash() {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return a uniform float in [0, 1) for this block
+     */
+    public static float nextFloat(long seed, int x, int y) {
+        long z = mix(seed + (((long) x << 32) | (y & 0xFFFFFFFFL)) * GOLDEN_GAMMA);
+        return (z >>> 40) * 0x1.0p-24f;
+    }
+}
@@ -0,0 +1,112 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+
+import java.util.function.IntUnaryOperator;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * Decides which blocks of a distance field tile get painted. Every block of ring d is painted with chance[d].
+ * <p>
+ * In sparse mode, rings with a low chance are not rolled block by block. The blocks of such a ring are lined up and
+ * the gap to the next painted block is drawn from a geometric distribution, which gives exactly the same statistics
+ * as one Bernoulli trial per block, but only costs one random number per painted block.
+ * <p>
+ * With a dither texture the chance is compared against the texture instead of a random number. That is a single
+ * lookup per block already, so sparse mode only applies to the random pattern.
+ */
+class Sprayer {
+    static final float SPARSE_BELOW = 0.25f;
+    private final float[] chances;
+    private final long seed;
+    private final boolean sparse;
+    private final DitherTexture texture;
+
+    Sprayer(float[] chances, long seed, boolean sparse) {
+        this(chances, seed, sparse, DitherTexture.Pattern.RANDOM);
+    }
+
+    Sprayer(float[] chances, long seed, boolean sparse, DitherTexture.Pattern pattern) {
+        this.chances = chances;
+        this.seed = seed;
+        this.texture = pattern.texture();
+        this.sparse = sparse && texture == null;
+    }
+
+    private float threshold(int x, int y) {
+        return DitherTexture.threshold(texture, seed, x, y);
+    }
+
+    private boolean isSparse(int ring) {
+        return sparse && chances[ring] < SPARSE_BELOW;
+    }
+
+    /**
+     * @return the painted blocks of this tile as bitset, null if nothing is painted
+     */
+    long[] sprayTile(long key, short[] rings) {
+        return sprayTile(key, rings, d -> d);
+    }
+
+    /**
+     * @param ring maps the distances to the ring of every block, block by block, so no ring array is needed
+     * @return the painted blocks of this tile as bitset, null if nothing is painted
+     */
+    long[] sprayTile(long key, short[] distances, IntUnaryOperator ring) {
+        final int originX = BlockMask.tileX(key) << TILE_SIZE_BITS, originY = BlockMask.tileY(key) << TILE_SIZE_BITS;
+        long[] words = new long[BlockMask.WORDS_PER_TILE];
+        boolean any = false;
+        int[] sparseStart = sparse ? new int[chances.length + 1] : null;
+        for (int i = 0; i < distances.length; i++) {
+            int d = ring.applyAsInt(distances[i]);
+            if (d >= chances.length) continue;
+            if (isSparse(d)) {
+                sparseStart[d + 1]++;
+            } else if (chances[d] > threshold(originX + (i & (TILE_SIZE - 1)), originY + (i >> TILE_SIZE_BITS))) {
+                words[i >> 6] |= 1L << i;
+                any = true;
+            }
+        }
+        if (sparse) {
+            any |= spraySparseRings(key, distances, ring, sparseStart, words);
+        }
+        return any ? words : null;
+    }
+
+    private boolean spraySparseRings(long key, short[] distances, IntUnaryOperator ring, int[] start, long[] words) {
+        for (int d = 1; d < start.length; d++)
+            start[d] += start[d - 1];
+        if (start[start.length - 1] == 0) return false;
+
+        // line up the blocks of every sparse ring, in block order
+        short[] order = new short[start[start.length - 1]];
+        int[] fill = start.clone();
+        for (int i = 0; i < distances.length; i++) {
+            int d = ring.applyAsInt(distances[i]);
+            if (d < chances.length && isSparse(d))
+                order[fill[d]++] = (short) i;
+        }
+
+        boolean any = false;
+        for (int d = 0; d < chances.length; d++) {
+            int count = start[d + 1] - start[d];
+            if (count == 0 || chances[d] <= 0) continue;
+            double logMiss = Math.log(1 - chances[d]);
+            // every ring starts its own stream. offsets of one base would hand ring d+1 the stream of ring d, one
+            // draw later.
+            long state = BlockMask.mix(seed ^ key * SprayHash.GOLDEN_GAMMA ^ BlockMask.mix(d + 1));
+            for (long pos = -1; ; ) {
+                state += SprayHash.GOLDEN_GAMMA;
+                double u = ((BlockMask.mix(state) >>> 11) + 1) * 0x1.0p-53;   // (0, 1]
+                pos += 1 + (long) (Math.log(u) / logMiss);
+                if (pos >= count) break;
+                int i = order[start[d] + (int) pos];
+                words[i >> 6] |= 1L << i;
+                any = true;
+            }
+        }
+        return any;
+    }
+}
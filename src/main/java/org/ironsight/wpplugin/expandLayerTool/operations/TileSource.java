@@ -0,0 +1,58 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import java.util.Collection;
+
+/**
+ * The map an {@link EdgeExpansion} reads its input layer from and paints its output layer on, tile by tile. Tiles are
+ * addressed by {@link org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask#tileKey}, blocks of a tile as bitset
+ * in the layout of {@link org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask#tileWords}. A layer is either the
+ * selection or the annotation blocks of one colour.
+ * <p>
+ * Reads may come from several threads at once. Changes only happen inside {@link #changes(Runnable)}.
+ */
+public interface TileSource {
+    /**
+     * @return all tiles of the map
+     */
+    Collection<Long> tileKeys();
+
+    /**
+     * @return if the tile is part of the map
+     */
+    boolean isPresent(long key);
+
+    /**
+     * cheap check if a tile holds any block of the layer
+     */
+    boolean hasLayer(long key, boolean selection);
+
+    /**
+     * @return the blocks of the layer in this tile, null if there are none
+     */
+    long[] readLayer(long key, boolean selection, int annotationValue);
+
+    void clearLayer(long key, boolean selection);
+
+    /**
+     * @return the terrain height of every block of the tile, row by row, null if the tile is not part of the map. must
+     * not be modified.
+     */
+    float[] heights(long key);
+
+    /**
+     * add the blocks to the layer. tiles that are not part of the map are skipped.
+     */
+    void paint(long key, long[] words, boolean selection, int annotationValue);
+
+    /**
+     * remove the blocks from the layer. blocks annotated with another colour keep it.
+     */
+    void erase(long key, long[] words, boolean selection, int annotationValue);
+
+    /**
+     * run a batch of changes. a worldpainter dimension holds back its events until the batch is done.
+     */
+    default void changes(Runnable changes) throws InterruptedException {
+        changes.run();
+    }
+}
@@ -0,0 +1,191 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * A set of blocks, stored as one bitset per worldpainter tile. Every row of a tile is packed into
+ * {@link #WORDS_PER_ROW} longs, so a tile costs a fixed 2 KB no matter how many of its blocks are set, and no object
+ * is allocated per block.
+ */
+public class BlockMask {
+    public static final int WORDS_PER_ROW = TILE_SIZE >> 6;
+    public static final int WORDS_PER_TILE = WORDS_PER_ROW * TILE_SIZE;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final HashMap<Long, long[]> tiles = new HashMap<>();
+    private int size;
+    // most lookups hit the same tile as the one before
+    private long lastKey = Long.MIN_VALUE;
+    private long[] lastTile;
+
+    public static long tileKey(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    public static int tileX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int tileY(long key) {
+        return (int) key;
+    }
+
+    private long[] tile(int x, int y, boolean create) {
+        long key = tileKey(x >> TILE_SIZE_BITS, y >> TILE_SIZE_BITS);
+        if (key == lastKey) return lastTile;
+        long[] words = tiles.get(key);
+        if (words == null) {
+            if (!create) return null;
+            words = new long[WORDS_PER_TILE];
+            tiles.put(key, words);
+        }
+        lastKey = key;
+        lastTile = words;
+        return words;
+    }
+
+    private static int wordIndex(int x, int y) {
+        return (y & TILE_MASK) * WORDS_PER_ROW + ((x & TILE_MASK) >> 6);
+    }
+
+    /**
+     * @return true if the block was not part of the set before
+     */
+    public boolean add(int x, int y) {
+        long[] words = tile(x, y, true);
+        int idx = wordIndex(x, y);
+        long bit = 1L << x;
+        if ((words[idx] & bit) != 0) return false;
+        words[idx] |= bit;
+        size++;
+        return true;
+    }
+
+    public boolean contains(int x, int y) {
+        long[] words = tile(x, y, false);
+        return words != null && (words[wordIndex(x, y)] & (1L << x)) != 0;
+    }
+
+    public boolean remove(int x, int y) {
+        long[] words = tile(x, y, false);
+        if (words == null) return false;
+        int idx = wordIndex(x, y);
+        long bit = 1L << x;
+        if ((words[idx] & bit) == 0) return false;
+        words[idx] &= ~bit;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int tileCount() {
+        return tiles.size();
+    }
+
+    public Set<Long> tileKeys() {
+        return Collections.unmodifiableSet(tiles.keySet());
+    }
+
+    /**
+     * @return the bitset of this tile, null if no block in it is set. rows are {@link #WORDS_PER_ROW} longs, bit i of
+     * a word is the block at x = word * 64 + i. the array is shared with the mask.
+     */
+    public long[] tileWords(long key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * replace the bitset of a tile. the array is taken over by the mask, empty bitsets remove the tile.
+     */
+    public void putTile(long key, long[] words) {
+        long[] old = tiles.remove(key);
+        if (old != null) size -= bitCount(old);
+        lastKey = Long.MIN_VALUE;
+        lastTile = null;
+        int count = bitCount(words);
+        if (count == 0) return;
+        tiles.put(key, words);
+        size += count;
+    }
+
+    public void removeTile(long key) {
+        putTile(key, new long[0]);
+    }
+
+    private static int bitCount(long[] words) {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * 64 bit hash over all set blocks. two masks with the same blocks always give the same fingerprint.
+     */
+    public long fingerprint() {
+        List<Long> keys = new ArrayList<>(tiles.keySet());
+        keys.sort(null);
+        long hash = mix(size);
+        for (long key : keys) {
+            long[] words = tiles.get(key);
+            if (bitCount(words) == 0) continue; // emptied by remove()
+            hash = mix(hash ^ key);
+            for (long word : words)
+                hash = mix(hash + word);
+        }
+        return hash;
+    }
+
+    /**
+     * splitmix64 finalizer, also the mixing step of the spray hash
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * approximate heap usage of the bitsets, for comparing against a per-block representation
+     */
+    public long estimatedBytes() {
+        return (long) tiles.size() * (WORDS_PER_TILE * 8L + 64);
+    }
+
+    /**
+     * visit every block in the set. blocks are visited tile by tile, row by row inside a tile.
+     */
+    public void forEach(BlockConsumer consumer) {
+        for (Map.Entry<Long, long[]> entry : tiles.entrySet()) {
+            int originX = tileX(entry.getKey()) << TILE_SIZE_BITS, originY = tileY(entry.getKey()) << TILE_SIZE_BITS;
+            long[] words = entry.getValue();
+            for (int i = 0; i < WORDS_PER_TILE; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    consumer.accept(originX + ((i % WORDS_PER_ROW) << 6) + bit, originY + i / WORDS_PER_ROW);
+                }
+            }
+        }
+    }
+
+    public interface BlockConsumer {
+        void accept(int x, int y);
+    }
+}
@@ -0,0 +1,171 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.*;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * Same rings as {@link RingFinder}, but every ring is computed as a morphological dilation on the tile bitsets:
+ * {@code ring(i) = dilate(ring(i-1)) & ~ring(i-1) & ~ring(i-2) & ~restriction}. A dilation is a few shifts and ORs per
+ * long, so 64 blocks are handled at once and nothing is allocated per block. Bits that spill over a tile border are
+ * picked up by the neighbouring tile.
+ */
+public class DilationRingFinder implements RingExpansion {
+    private static final long LAST_BIT = 1L << 63;
+    private static final long[] EMPTY = new long[WORDS_PER_TILE];
+    private static final long[] FULL = new long[WORDS_PER_TILE];
+
+    static {
+        Arrays.fill(FULL, -1L);
+    }
+
+    private final BlockMask initialPoints;
+    private final BlockMask restriction;
+
+    public DilationRingFinder(BlockMask initialPoints, BlockMask restriction) {
+        this.initialPoints = initialPoints;
+        this.restriction = restriction;
+    }
+
+    @Override
+    public void forEachRing(int amountRings, RingVisitor visitor) {
+        if (amountRings <= 0) return;
+        visitor.visit(0, initialPoints);
+        BlockMask before = initialPoints, last = initialPoints;
+        for (int i = 1; i < amountRings; i++) {
+            BlockMask next = nextRing(last, before);
+            visitor.visit(i, next);
+            before = last;
+            last = next;
+        }
+    }
+
+    /**
+     * @return the blocks of the mask that have at least one of their 8 neighbours outside of it
+     */
+    public static BlockMask border(BlockMask mask) {
+        BlockMask border = new BlockMask();
+        for (long key : mask.tileKeys()) {
+            // the dilation of everything outside the mask reaches exactly the border blocks inside of it
+            long[] words = dilateTile((tileX, tileY) -> complement(mask, tileX, tileY), key);
+            long[] inside = mask.tileWords(key);
+            for (int i = 0; i < WORDS_PER_TILE; i++)
+                words[i] &= inside[i];
+            border.putTile(key, words);
+        }
+        return border;
+    }
+
+    private static long[] complement(BlockMask mask, int tileX, int tileY) {
+        long[] words = mask.tileWords(tileKey(tileX, tileY));
+        if (words == null) return FULL;
+        long[] inverted = new long[WORDS_PER_TILE];
+        for (int i = 0; i < WORDS_PER_TILE; i++)
+            inverted[i] = ~words[i];
+        return inverted;
+    }
+
+    private BlockMask nextRing(BlockMask frontier, BlockMask before) {
+        BlockMask ring = new BlockMask();
+        for (long key : targetTiles(frontier)) {
+            long[] words = dilateTile((tileX, tileY) -> words(frontier, tileX, tileY), key);
+            long[] frontierWords = frontier.tileWords(key), beforeWords = before.tileWords(key), restricted =
+                    restriction.tileWords(key);
+            for (int i = 0; i < WORDS_PER_TILE; i++) {
+                long mask = 0;
+                if (frontierWords != null) mask |= frontierWords[i];
+                if (beforeWords != null) mask |= beforeWords[i];
+                if (restricted != null) mask |= restricted[i];
+                words[i] &= ~mask;
+            }
+            ring.putTile(key, words);
+        }
+        return ring;
+    }
+
+    /**
+     * all tiles that can receive a bit from the frontier: the frontier tiles and the neighbours they touch at the
+     * border
+     */
+    private static Set<Long> targetTiles(BlockMask frontier) {
+        Set<Long> targets = new HashSet<>();
+        final int lastRow = (TILE_SIZE - 1) * WORDS_PER_ROW;
+        for (long key : frontier.tileKeys()) {
+            targets.add(key);
+            long[] words = frontier.tileWords(key);
+            boolean top = false, bottom = false, left = false, right = false;
+            for (int w = 0; w < WORDS_PER_ROW; w++) {
+                top |= words[w] != 0;
+                bottom |= words[lastRow + w] != 0;
+            }
+            for (int row = 0; row < TILE_SIZE * WORDS_PER_ROW; row += WORDS_PER_ROW) {
+                left |= (words[row] & 1L) != 0;
+                right |= (words[row + WORDS_PER_ROW - 1] & LAST_BIT) != 0;
+            }
+            int tx = tileX(key), ty = tileY(key);
+            if (top) targets.add(tileKey(tx, ty - 1));
+            if (bottom) targets.add(tileKey(tx, ty + 1));
+            if (left) targets.add(tileKey(tx - 1, ty));
+            if (right) targets.add(tileKey(tx + 1, ty));
+            if ((words[0] & 1L) != 0) targets.add(tileKey(tx - 1, ty - 1));
+            if ((words[WORDS_PER_ROW - 1] & LAST_BIT) != 0) targets.add(tileKey(tx + 1, ty - 1));
+            if ((words[lastRow] & 1L) != 0) targets.add(tileKey(tx - 1, ty + 1));
+            if ((words[lastRow + WORDS_PER_ROW - 1] & LAST_BIT) != 0) targets.add(tileKey(tx + 1, ty + 1));
+        }
+        return targets;
+    }
+
+    private interface TileWords {
+        long[] get(int tileX, int tileY);
+    }
+
+    private static long[] words(BlockMask mask, int tileX, int tileY) {
+        long[] words = mask.tileWords(tileKey(tileX, tileY));
+        return words == null ? EMPTY : words;
+    }
+
+    /**
+     * 8-neighbour dilation of one tile, including the bits that come in from the 8 surrounding tiles
+     */
+    private static long[] dilateTile(TileWords frontier, long key) {
+        int tx = tileX(key), ty = tileY(key);
+        long[] center = frontier.get(tx, ty), west = frontier.get(tx - 1, ty), east = frontier.get(tx + 1, ty);
+        long[] north = frontier.get(tx, ty - 1), northWest = frontier.get(tx - 1, ty - 1), northEast =
+                frontier.get(tx + 1, ty - 1);
+        long[] south = frontier.get(tx, ty + 1), southWest = frontier.get(tx - 1, ty + 1), southEast =
+                frontier.get(tx + 1, ty + 1);
+        final int lastRow = TILE_SIZE - 1;
+
+        // horizontal dilation of every row, plus the rows directly above and below this tile
+        long[] horizontal = new long[WORDS_PER_TILE + 2 * WORDS_PER_ROW];
+        dilateRow(northWest, north, northEast, lastRow, horizontal, 0);
+        for (int row = 0; row < TILE_SIZE; row++) {
+            dilateRow(west, center, east, row, horizontal, (row + 1) * WORDS_PER_ROW);
+        }
+        dilateRow(southWest, south, southEast, 0, horizontal, (TILE_SIZE + 1) * WORDS_PER_ROW);
+
+        long[] out = new long[WORDS_PER_TILE];
+        for (int row = 0; row < TILE_SIZE; row++) {
+            int target = row * WORDS_PER_ROW, source = target + WORDS_PER_ROW;
+            for (int w = 0; w < WORDS_PER_ROW; w++) {
+                out[target + w] = horizontal[source - WORDS_PER_ROW + w] | horizontal[source + w] |
+                        horizontal[source + WORDS_PER_ROW + w];
+            }
+        }
+        return out;
+    }
+
+    private static void dilateRow(long[] west, long[] center, long[] east, int row, long[] out, int offset) {
+        int start = row * WORDS_PER_ROW;
+        for (int w = 0; w < WORDS_PER_ROW; w++) {
+            long word = center[start + w];
+            // block x-1 lives in the previous word (or the west tile), block x+1 in the next word (or the east tile)
+            long previous = w > 0 ? center[start + w - 1] : west[start + WORDS_PER_ROW - 1];
+            long next = w < WORDS_PER_ROW - 1 ? center[start + w + 1] : east[start];
+            out[offset + w] = word | (word << 1) | (previous >>> 63) | (word >>> 1) | (next << 63);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * The ring index of every block reached by an expansion, stored as one short per block for each touched tile. Ring
+ * membership does not depend on how many rings are requested, so a field with n rings can serve any width up to n.
+ * <p>
+ * A signed field holds the distance of every block to the nearest block on the other side of the edge of a mask:
+ * negative inside the mask, positive outside, never 0. It is built from one expansion that starts at the
+ * {@link DilationRingFinder#border(BlockMask) border} of the mask, so both sides come out of a single pass.
+ * <p>
+ * An off-heap field keeps its tiles as pages in a {@link MappedTileStore} instead, one byte per block if the rings fit
+ * and two otherwise, and only decodes the most recently used pages onto the heap. The mapped pages are released with
+ * {@link #close()}.
+ */
+public class DistanceField implements Closeable {
+    public static final short UNREACHED = Short.MAX_VALUE;
+    // a block inside the mask of a signed field that is further from the edge than the rings go
+    public static final short UNREACHED_INSIDE = -UNREACHED;
+    static final int RESIDENT_PAGES = 64;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int BLOCKS = TILE_SIZE * TILE_SIZE;
+    // all tiles of a heap field, the resident pages of an off-heap one
+    private final HashMap<Long, short[]> tiles;
+    private final MappedTileStore pages;
+    private final boolean bytePages;
+    private final Set<Long> keys;
+    private final int rings;
+    // null for an unsigned field
+    private final BlockMask inside;
+    private volatile boolean closed;
+
+    public DistanceField(RingExpansion expansion, int amountRings) {
+        this(Math.min(amountRings, UNREACHED), null, null);
+        try {
+            fill(expansion);
+        } catch (IOException e) {
+            throw new AssertionError(e);   // heap fields do no io
+        }
+    }
+
+    /**
+     * empty field, off-heap if pages are given. off-heap pages of an unsigned field store ring + 1 and pages of a
+     * signed field the distance itself, so the zeros of a new page already mean unreached either way.
+     */
+    DistanceField(int rings, BlockMask inside, MappedTileStore pages) {
+        this.rings = rings;
+        this.inside = inside;
+        this.pages = pages;
+        if (pages == null) {
+            this.bytePages = false;
+            this.tiles = new HashMap<>();
+            this.keys = tiles.keySet();
+        } else {
+            this.bytePages = pages.getPageBytes() == BLOCKS;
+            this.keys = new HashSet<>();
+            this.tiles = new LinkedHashMap<Long, short[]>(RESIDENT_PAGES * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, short[]> eldest) {
+                    return size() > RESIDENT_PAGES;
+                }
+            };
+        }
+    }
+
+    /**
+     * build a field that keeps its distances in a memory mapped scratch file instead of on the heap
+     */
+    public static DistanceField offHeap(RingExpansion expansion, int amountRings) throws IOException {
+        // byte pages hold the rings 0..254 as 1..255
+        return offHeap(expansion, Math.min(amountRings, UNREACHED - 1), null, amountRings < 255);
+    }
+
+    /**
+     * build a signed field of a mask
+     *
+     * @param border      expansion that starts at the border of the mask. ring i of it is at distance -(i + 1) inside
+     *                    the mask and i outside of it.
+     * @param amountRings the largest distance the field has to hold on either side. the expansion is asked for one
+     *                    more ring than that.
+     */
+    public static DistanceField signed(BlockMask mask, RingExpansion border, int amountRings, boolean offHeap) throws
+            IOException {
+        int rings = Math.min(amountRings, UNREACHED - 2);
+        // byte pages hold -127..127, and -128 for unreached inside blocks
+        if (offHeap) return offHeap(border, rings, mask, rings < 127);
+        DistanceField field = new DistanceField(rings, mask, null);
+        field.fill(border);
+        return field;
+    }
+
+    private static DistanceField offHeap(RingExpansion expansion, int rings, BlockMask inside, boolean bytePages)
+            throws IOException {
+        MappedTileStore pages = new MappedTileStore(bytePages ? BLOCKS : 2 * BLOCKS);
+        try {
+            DistanceField field = new DistanceField(rings, inside, pages);
+            field.fill(expansion);
+            return field;
+        } catch (IOException | RuntimeException e) {
+            pages.close();
+            throw e;
+        }
+    }
+
+    private void fill(RingExpansion expansion) throws IOException {
+        if (inside != null) {
+            // inside blocks stay marked as inside, even where no ring gets to them
+            for (long key : inside.tileKeys())
+                fillTile(key, inside.tileWords(key), UNREACHED_INSIDE, UNREACHED_INSIDE);
+        }
+        try {
+            // every block is in one ring only, so the parts can be stored in whatever order they come
+            expansion.forEachRingPart(inside == null ? rings : rings + 1, (ringIndex, ring) -> {
+                synchronized (this) {
+                    for (long key : ring.tileKeys()) {
+                        try {
+                            if (inside == null) fillTile(key, ring.tileWords(key), ringIndex, ringIndex);
+                            else fillTile(key, ring.tileWords(key), ringIndex, -(ringIndex + 1));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * store a distance for every set block of a tile bitset, insideDistance for the blocks inside the mask
+     */
+    private void fillTile(long key, long[] words, int distance, int insideDistance) throws IOException {
+        long[] insideWords = inside == null ? null : inside.tileWords(key);
+        short[] distances = null;
+        ByteBuffer page = null;
+        if (pages == null) {
+            distances = tiles.get(key);
+            if (distances == null) {
+                distances = new short[BLOCKS];
+                Arrays.fill(distances, UNREACHED);
+                tiles.put(key, distances);
+            }
+        } else {
+            page = pages.page(key);
+            keys.add(key);
+        }
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                // rows are a whole number of words, so the block index is just word * 64 + bit
+                int block = (i << 6) + bit;
+                int value = insideWords != null && (insideWords[i] & 1L << bit) != 0 ? insideDistance : distance;
+                if (distances != null) distances[block] = (short) value;
+                else if (bytePages) page.put(block, (byte) encode(value));
+                else page.putShort(block << 1, (short) encode(value));
+            }
+        }
+    }
+
+    private int encode(int distance) {
+        if (inside == null) return distance + 1;
+        return bytePages && distance == UNREACHED_INSIDE ? Byte.MIN_VALUE : distance;
+    }
+
+    private short decode(int stored) {
+        if (stored == 0) return UNREACHED;
+        if (inside == null) return (short) (stored - 1);
+        return bytePages && stored == Byte.MIN_VALUE ? UNREACHED_INSIDE : (short) stored;
+    }
+
+    public boolean isSigned() {
+        return inside != null;
+    }
+
+    public boolean isOffHeap() {
+        return pages != null;
+    }
+
+    /**
+     * @return how many rings this field holds
+     */
+    public int getRings() {
+        return rings;
+    }
+
+    /**
+     * add up the ring sizes of some tiles of the field
+     *
+     * @param ring maps a distance of the field to the ring it counts for
+     */
+    public void countRings(Iterable<Long> keys, IntUnaryOperator ring, long[] counts) {
+        short[] buffer = new short[BLOCKS];
+        for (long key : keys) {
+            short[] distances = tileDistances(key, buffer);
+            if (distances == null) continue;
+            for (short distance : distances) {
+                int index = ring.applyAsInt(distance);
+                if (index >= 0 && index < counts.length) counts[index]++;
+            }
+        }
+    }
+
+    public int getDistance(int x, int y) {
+        short[] distances = tileDistances(BlockMask.tileKey(x >> TILE_SIZE_BITS, y >> TILE_SIZE_BITS));
+        return distances == null ? UNREACHED : distances[((y & TILE_MASK) << TILE_SIZE_BITS) | (x & TILE_MASK)];
+    }
+
+    public Set<Long> tileKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return ring index or signed distance per block of this tile, row by row, {@link #UNREACHED} where no ring got
+     * to. shared with the field, must not be modified.
+     */
+    public short[] tileDistances(long key) {
+        if (pages == null) return tiles.get(key);
+        checkOpen();
+        if (!keys.contains(key)) return null;
+        synchronized (tiles) {
+            short[] distances = tiles.get(key);
+            if (distances != null) return distances;
+        }
+        // decode outside of the lock, two threads decoding the same page get equal arrays
+        short[] distances = decodePage(key, new short[BLOCKS]);
+        synchronized (tiles) {
+            tiles.put(key, distances);
+        }
+        return distances;
+    }
+
+    /**
+     * like {@link #tileDistances(long)}, for a single pass over many tiles: a tile that is not on the heap is decoded
+     * into the buffer instead of a new array, and not kept resident.
+     *
+     * @param buffer room for the distances of a tile, reused by the caller for the next tile
+     * @return the buffer or an array of the field, must not be modified
+     */
+    public short[] tileDistances(long key, short[] buffer) {
+        if (pages == null) return tileDistances(key);
+        checkOpen();
+        if (!keys.contains(key)) return null;
+        synchronized (tiles) {
+            short[] distances = tiles.get(key);
+            if (distances != null) return distances;
+        }
+        return decodePage(key, buffer);
+    }
+
+    private short[] decodePage(long key, short[] distances) {
+        try {
+            ByteBuffer page = pages.page(key);
+            for (int i = 0; i < BLOCKS; i++) {
+                int stored = !bytePages ? page.getShort(i << 1) : inside == null ? page.get(i) & 0xFF : page.get(i);
+                distances[i] = decode(stored);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return distances;
+    }
+
+    /**
+     * @return heap used by this field. an off-heap field only counts its resident pages.
+     */
+    public long estimatedBytes() {
+        if (pages == null) return (long) tiles.size() * (BLOCKS * 2L + 64);
+        return (long) Math.min(keys.size(), RESIDENT_PAGES) * BLOCKS * 2L + keys.size() * 64L;
+    }
+
+    /**
+     * @return size of the mapped scratch file, 0 for a heap field
+     */
+    public long offHeapBytes() {
+        return pages == null ? 0 : pages.fileBytes();
+    }
+
+    /**
+     * @return true once the field is closed. a closed heap field can still be read, a closed off-heap field not.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * fail loudly instead of reading pages that are gone
+     */
+    void checkOpen() {
+        if (isOffHeap() && isClosed()) throw new IllegalStateException("off-heap distance field is closed");
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (pages != null) pages.close();
+    }
+}
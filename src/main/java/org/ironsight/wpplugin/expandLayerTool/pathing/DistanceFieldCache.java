@@ -0,0 +1,113 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently computed distance fields, keyed by a fingerprint of everything they depend on. The least recently
+ * used fields are dropped once the fields together take more than the memory budget. Dropped fields are closed, so
+ * off-heap fields give back their scratch files.
+ * <p>
+ * Several runs can share the cache. A run acquires the field it uses and releases it when it is done, and a field that
+ * is dropped while runs still use it is only closed once the last of them released it.
+ */
+public class DistanceFieldCache {
+    private final long budgetBytes;
+    private final LinkedHashMap<Long, Entry> fields = new LinkedHashMap<>(16, 0.75f, true);
+    // how many runs use a field right now, for every field that is in use
+    private final IdentityHashMap<DistanceField, Integer> users = new IdentityHashMap<>();
+    private long usedBytes;
+
+    public DistanceFieldCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the cached field, which the caller has to {@link #release} again, or null if there is none or it has
+     * fewer than the requested rings
+     */
+    public synchronized DistanceField acquire(long key, int minRings) {
+        Entry entry = fields.get(key);
+        if (entry == null || entry.field.getRings() < minRings) return null;
+        users.merge(entry.field, 1, Integer::sum);
+        return entry.field;
+    }
+
+    /**
+     * keep a field the caller computed. a kept field counts as acquired by the caller.
+     *
+     * @return false if the field alone is over the budget and was not kept, then the caller still owns it
+     */
+    public synchronized boolean put(long key, DistanceField field) {
+        // counted once, so a field that grows while in use is taken out with the bytes it was put in with
+        Entry entry = new Entry(field, field.estimatedBytes());
+        if (entry.bytes > budgetBytes) return false;
+        users.merge(field, 1, Integer::sum);
+        Entry old = fields.remove(key);
+        if (old != null) drop(old);
+        fields.put(key, entry);
+        usedBytes += entry.bytes;
+        Iterator<Map.Entry<Long, Entry>> eldest = fields.entrySet().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext()) {
+            Entry dropped = eldest.next().getValue();
+            eldest.remove();
+            drop(dropped);
+        }
+        return true;
+    }
+
+    /**
+     * the caller is done with a field it acquired or put
+     */
+    public synchronized void release(DistanceField field) {
+        Integer count = users.get(field);
+        if (count == null) throw new IllegalStateException("field is not in use");
+        if (count > 1) {
+            users.put(field, count - 1);
+            return;
+        }
+        users.remove(field);
+        for (Entry entry : fields.values())
+            if (entry.field == field) return;
+        close(field);
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : fields.values())
+            drop(entry);
+        fields.clear();
+    }
+
+    /**
+     * forget an entry that was taken out of the map, and close its field unless a run still uses it
+     */
+    private void drop(Entry entry) {
+        usedBytes -= entry.bytes;
+        if (!users.containsKey(entry.field)) close(entry.field);
+    }
+
+    private static void close(DistanceField field) {
+        try {
+            field.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private static final class Entry {
+        final DistanceField field;
+        final long bytes;
+
+        Entry(DistanceField field, long bytes) {
+            this.field = field;
+            this.bytes = bytes;
+        }
+    }
+}
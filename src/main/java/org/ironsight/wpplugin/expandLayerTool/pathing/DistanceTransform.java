@@ -0,0 +1,146 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.util.Arrays;
+
+/**
+ * Computes the chebyshev (8-neighbour) distance of every block to a set of seed blocks in a single two-pass chamfer
+ * sweep over the bounding box of the seeds. Runtime is linear in the area of the box and does not depend on how many
+ * rings are requested.
+ * <p>
+ * Rings have the same meaning as in {@link RingFinder}: ring 0 are the seeds, ring i are all blocks with distance i.
+ * Restricted blocks act as walls that are never entered. Two sweeps can not follow arbitrary detours around walls, so
+ * this only matches the ring-by-ring expansion if every block can be reached on a straight chebyshev path, which
+ * holds for the closed bands around the input layer that {@code SelectEdgeOperation} uses as restriction.
+ */
+public class DistanceTransform implements RingExpansion {
+    private static final short WALL = Short.MAX_VALUE;
+    private final int minX, minY, sizeX, sizeY;
+    private final int maxDistance;
+    private final short[] distance;
+    private final int[] ringStart;
+    private final int[] ringIndices;
+
+    public DistanceTransform(BlockMask seeds, BlockMask restriction, int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(maxDistance, Short.MAX_VALUE - 2));
+        if (seeds.isEmpty()) {
+            minX = minY = sizeX = sizeY = 0;
+            distance = new short[0];
+            ringStart = new int[this.maxDistance + 2];
+            ringIndices = new int[0];
+            return;
+        }
+
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        seeds.forEach((x, y) -> {
+            bounds[0] = Math.min(bounds[0], x);
+            bounds[1] = Math.min(bounds[1], y);
+            bounds[2] = Math.max(bounds[2], x);
+            bounds[3] = Math.max(bounds[3], y);
+        });
+        minX = bounds[0] - this.maxDistance;
+        minY = bounds[1] - this.maxDistance;
+        sizeX = bounds[2] - bounds[0] + 1 + 2 * this.maxDistance;
+        sizeY = bounds[3] - bounds[1] + 1 + 2 * this.maxDistance;
+
+        distance = new short[sizeX * sizeY];
+        Arrays.fill(distance, (short) (this.maxDistance + 1));
+        restriction.forEach((x, y) -> {
+            if (inside(x, y))
+                distance[index(x, y)] = WALL;
+        });
+        seeds.forEach((x, y) -> distance[index(x, y)] = 0);
+        sweep();
+
+        // bucket all blocks by ring in one pass (counting sort), so every ring is available at once
+        ringStart = new int[this.maxDistance + 2];
+        for (int i = 0; i < distance.length; i++) {
+            int d = distance[i];
+            if (d <= this.maxDistance)
+                ringStart[d + 1]++;
+        }
+        for (int d = 1; d < ringStart.length; d++) {
+            ringStart[d] += ringStart[d - 1];
+        }
+        ringIndices = new int[ringStart[ringStart.length - 1]];
+        int[] fill = Arrays.copyOf(ringStart, ringStart.length);
+        for (int i = 0; i < distance.length; i++) {
+            int d = distance[i];
+            if (d <= this.maxDistance)
+                ringIndices[fill[d]++] = i;
+        }
+    }
+
+    /**
+     * forward and backward chamfer pass with unit weights for all 8 neighbours, which is exact for chebyshev distance
+     */
+    private void sweep() {
+        for (int y = 0; y < sizeY; y++) {
+            int row = y * sizeX;
+            for (int x = 0; x < sizeX; x++) {
+                int d = distance[row + x];
+                if (d == 0 || d == WALL) continue;
+                if (x > 0) d = Math.min(d, distance[row + x - 1] + 1);
+                if (y > 0) {
+                    int above = row - sizeX + x;
+                    d = Math.min(d, distance[above] + 1);
+                    if (x > 0) d = Math.min(d, distance[above - 1] + 1);
+                    if (x < sizeX - 1) d = Math.min(d, distance[above + 1] + 1);
+                }
+                distance[row + x] = (short) d;
+            }
+        }
+        for (int y = sizeY - 1; y >= 0; y--) {
+            int row = y * sizeX;
+            for (int x = sizeX - 1; x >= 0; x--) {
+                int d = distance[row + x];
+                if (d == 0 || d == WALL) continue;
+                if (x < sizeX - 1) d = Math.min(d, distance[row + x + 1] + 1);
+                if (y < sizeY - 1) {
+                    int below = row + sizeX + x;
+                    d = Math.min(d, distance[below] + 1);
+                    if (x > 0) d = Math.min(d, distance[below - 1] + 1);
+                    if (x < sizeX - 1) d = Math.min(d, distance[below + 1] + 1);
+                }
+                distance[row + x] = (short) d;
+            }
+        }
+    }
+
+    private boolean inside(int x, int y) {
+        return x >= minX && y >= minY && x < minX + sizeX && y < minY + sizeY;
+    }
+
+    private int index(int x, int y) {
+        return (y - minY) * sizeX + (x - minX);
+    }
+
+    /**
+     * @return chebyshev distance of this block to the nearest seed, or Integer.MAX_VALUE if it is further away than
+     * the maximum distance
+     */
+    public int getDistance(int x, int y) {
+        if (!inside(x, y)) return Integer.MAX_VALUE;
+        int d = distance[index(x, y)];
+        return d > maxDistance ? Integer.MAX_VALUE : d;
+    }
+
+    /**
+     * hand the rings 0 to amountRings-1 to the visitor in order. each ring is only built right before it is visited.
+     */
+    @Override
+    public void forEachRing(int amountRings, RingVisitor visitor) {
+        for (int i = 0; i < Math.min(amountRings, maxDistance + 1); i++) {
+            visitor.visit(i, ring(i));
+        }
+    }
+
+    public BlockMask ring(int idx) {
+        BlockMask ring = new BlockMask();
+        if (idx < 0 || idx > maxDistance) return ring;
+        for (int i = ringStart[idx]; i < ringStart[idx + 1]; i++) {
+            int index = ringIndices[i];
+            ring.add(minX + index % sizeX, minY + index / sizeX);
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,204 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * Grows the seeds over the terrain instead of in all directions alike: ring i are the blocks whose cheapest path of
+ * steps to one of the 8 neighbours costs more than i - 1 and at most i rings of {@link TerrainCost}, so only the seeds
+ * are ring 0. On flat ground that gives the same rings as the other engines, downhill the rings get wider, uphill
+ * narrower, and cliffs are not crossed at all. Restricted blocks and tiles without terrain are never entered.
+ * <p>
+ * The cheapest paths come from Dijkstra with a bucket queue (Dial's algorithm): costs are small whole numbers, so the
+ * open blocks are kept in one bucket per cost, in a ring buffer only as long as the most expensive step. Taking the
+ * next block is constant time instead of the log n of a heap, so the whole search is linear in the blocks reached.
+ */
+public class GeodesicExpansion implements RingExpansion {
+    private static final int[] DX = {-1, 0, 1, -1, 1, -1, 0, 1};
+    private static final int[] DY = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private final BlockMask seeds, restriction;
+    private final TerrainCost cost;
+
+    public GeodesicExpansion(BlockMask seeds, BlockMask restriction, TerrainCost cost) {
+        this.seeds = seeds;
+        this.restriction = restriction;
+        this.cost = cost;
+    }
+
+    /**
+     * @return an engine for {@link ShardedExpansion}, with a halo wide enough for the cheapest steps
+     */
+    public static Factory engine(TerrainCost cost) {
+        return new Factory() {
+            @Override
+            public RingExpansion create(BlockMask seeds, BlockMask restriction, int amountRings) {
+                return new GeodesicExpansion(seeds, restriction, cost);
+            }
+
+            @Override
+            public int reach(int amountRings) {
+                return TerrainCost.reach(amountRings);
+            }
+        };
+    }
+
+    @Override
+    public void forEachRing(int amountRings, RingVisitor visitor) {
+        if (amountRings <= 0) return;
+        new Search((int) Math.min((long) (amountRings - 1) * TerrainCost.FLAT + 1, Integer.MAX_VALUE)).run(
+                amountRings, visitor);
+    }
+
+    private final class Search {
+        // nothing at or beyond this cost is in a ring
+        private final int limit;
+        private final HashMap<Long, TileState> tiles = new HashMap<>();
+        private final Buckets open = new Buckets(cost.maxStep() + 1);
+        // the tiles of the ring that is being settled
+        private final ArrayList<TileState> ringTiles = new ArrayList<>();
+        // neighbours are mostly in the same tile as the block before
+        private long lastKey = Long.MIN_VALUE;
+        private TileState last;
+
+        Search(int limit) {
+            this.limit = limit;
+        }
+
+        void run(int amountRings, RingVisitor visitor) {
+            seeds.forEach((x, y) -> {
+                tile(x, y).costs[index(x, y)] = 0;
+                open.add(0, pack(x, y));
+            });
+            int ringIndex = 0;
+            for (int current = 0; current < limit && !open.isEmpty(); current++) {
+                for (; ringIndex < ring(current); ringIndex++)
+                    visitor.visit(ringIndex, takeRing());
+                long[] blocks = open.bucket(current);
+                int count = open.size(current);
+                for (int b = 0; b < count; b++) {
+                    int x = (int) (blocks[b] >> 32), y = (int) blocks[b];
+                    TileState tile = tile(x, y);
+                    if (tile.costs[index(x, y)] != current) continue;   // queued again since, for less
+                    if (tile.ring == null) {
+                        tile.ring = new long[BlockMask.WORDS_PER_TILE];
+                        ringTiles.add(tile);
+                    }
+                    tile.ring[index(x, y) >> 6] |= 1L << x;
+                    if (tile.heights == null) continue;
+                    float height = tile.heights[index(x, y)];
+                    for (int n = 0; n < DX.length; n++) {
+                        int nx = x + DX[n], ny = y + DY[n], i = index(nx, ny);
+                        TileState next = tile(nx, ny);
+                        if (current >= next.costs[i] || next.heights == null || next.restricted(i)) continue;
+                        int step = cost.step(height, next.heights[i]);
+                        if (step == TerrainCost.IMPASSABLE || current + step >= limit || current + step >=
+                                next.costs[i]) continue;
+                        next.costs[i] = current + step;
+                        open.add(current + step, pack(nx, ny));
+                    }
+                }
+                open.clear(current);
+            }
+            if (ringIndex < amountRings) visitor.visit(ringIndex, takeRing());
+        }
+
+        private BlockMask takeRing() {
+            BlockMask ring = new BlockMask();
+            for (TileState tile : ringTiles) {
+                ring.putTile(tile.key, tile.ring);
+                tile.ring = null;
+            }
+            ringTiles.clear();
+            return ring;
+        }
+
+        private TileState tile(int x, int y) {
+            long key = BlockMask.tileKey(x >> TILE_SIZE_BITS, y >> TILE_SIZE_BITS);
+            if (key != lastKey) {
+                lastKey = key;
+                last = tiles.computeIfAbsent(key, k -> new TileState(k, cost.tile(k), restriction.tileWords(k)));
+            }
+            return last;
+        }
+    }
+
+    /**
+     * the cheapest known cost of every block of a tile, with its heights and restricted blocks
+     */
+    private static final class TileState {
+        final long key;
+        final int[] costs = new int[TILE_SIZE * TILE_SIZE];
+        // null outside of the map
+        final float[] heights;
+        final long[] restricted;
+        // the blocks of the current ring, null while there are none
+        long[] ring;
+
+        TileState(long key, float[] heights, long[] restricted) {
+            this.key = key;
+            this.heights = heights;
+            this.restricted = restricted;
+            Arrays.fill(costs, Integer.MAX_VALUE);
+        }
+
+        boolean restricted(int index) {
+            return restricted != null && (restricted[index >> 6] & 1L << index) != 0;
+        }
+    }
+
+    private static int ring(int cost) {
+        return (cost + TerrainCost.FLAT - 1) / TerrainCost.FLAT;
+    }
+
+    private static int index(int x, int y) {
+        return ((y & TILE_MASK) << TILE_SIZE_BITS) | (x & TILE_MASK);
+    }
+
+    private static long pack(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * open blocks by cost, one bucket per cost modulo the number of buckets. as long as no step costs as much as there
+     * are buckets, all queued costs fit without two of them sharing a bucket.
+     */
+    private static final class Buckets {
+        private final long[][] blocks;
+        private final int[] sizes;
+        private long queued;
+
+        Buckets(int count) {
+            blocks = new long[count][16];
+            sizes = new int[count];
+        }
+
+        void add(int cost, long block) {
+            int b = cost % blocks.length;
+            if (sizes[b] == blocks[b].length) blocks[b] = Arrays.copyOf(blocks[b], sizes[b] * 2);
+            blocks[b][sizes[b]++] = block;
+            queued++;
+        }
+
+        long[] bucket(int cost) {
+            return blocks[cost % blocks.length];
+        }
+
+        int size(int cost) {
+            return sizes[cost % blocks.length];
+        }
+
+        void clear(int cost) {
+            queued -= sizes[cost % blocks.length];
+            sizes[cost % blocks.length] = 0;
+        }
+
+        boolean isEmpty() {
+            return queued == 0;
+        }
+    }
+}
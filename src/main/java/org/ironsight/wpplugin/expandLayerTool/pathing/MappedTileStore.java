@@ -0,0 +1,114 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Fixed size pages of per tile data in a memory mapped scratch file, so the data lives in the page cache of the os
+ * instead of on the heap. The file is mapped in large segments that are added as pages are created, and deleted on
+ * {@link #close()}.
+ */
+public class MappedTileStore implements Closeable {
+    private static final int SEGMENT_BYTES = 1 << 26;
+    private final int pageBytes;
+    private final int pagesPerSegment;
+    private final File file;
+    private final RandomAccessFile access;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final LinkedHashMap<Long, Integer> slots = new LinkedHashMap<>();
+    private boolean closed;
+
+    public MappedTileStore(int pageBytes) throws IOException {
+        this(pageBytes, SEGMENT_BYTES);
+    }
+
+    MappedTileStore(int pageBytes, int segmentBytes) throws IOException {
+        if (pageBytes <= 0 || pageBytes > segmentBytes) throw new IllegalArgumentException("page size " + pageBytes);
+        this.pageBytes = pageBytes;
+        this.pagesPerSegment = segmentBytes / pageBytes;
+        this.file = File.createTempFile("expand-layer-", ".pages");
+        this.file.deleteOnExit();
+        this.access = new RandomAccessFile(file, "rw");
+        this.channel = access.getChannel();
+    }
+
+    public int getPageBytes() {
+        return pageBytes;
+    }
+
+    /**
+     * @return the page of this tile, zero filled when it is new. the buffer is a view on the file, writes to it go
+     * straight to the store.
+     */
+    public synchronized ByteBuffer page(long key) throws IOException {
+        if (closed) throw new IllegalStateException("tile store is closed");
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.size();
+            if (slot / pagesPerSegment == segments.size())
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * pagesPerSegment *
+                        pageBytes, (long) pagesPerSegment * pageBytes));
+            slots.put(key, slot);
+        }
+        ByteBuffer page = segments.get(slot / pagesPerSegment).duplicate();
+        int offset = (slot % pagesPerSegment) * pageBytes;
+        page.position(offset);
+        page.limit(offset + pageBytes);
+        return page.slice();
+    }
+
+    public synchronized boolean contains(long key) {
+        return slots.containsKey(key);
+    }
+
+    public void putWords(long key, long[] words) throws IOException {
+        LongBuffer page = page(key).asLongBuffer();
+        page.put(words);
+    }
+
+    /**
+     * @return the words stored for this tile, null if there is no page for it
+     */
+    public long[] getWords(long key, int length) throws IOException {
+        if (!contains(key)) return null;
+        long[] words = new long[length];
+        page(key).asLongBuffer().get(words);
+        return words;
+    }
+
+    /**
+     * @return a copy of all tiles with a page, in the order the pages were created
+     */
+    public synchronized List<Long> tileKeys() {
+        return new ArrayList<>(slots.keySet());
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    public long fileBytes() {
+        return (long) segments.size() * pagesPerSegment * pageBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        segments.clear();
+        slots.clear();
+        channel.close();
+        access.close();
+        // a mapped file can not be deleted on every os until the mapping is collected, deleteOnExit covers that
+        if (!file.delete()) file.deleteOnExit();
+    }
+}
@@ -0,0 +1,208 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE_BITS;
+
+/**
+ * A signed field for widths far beyond what rings at block resolution can afford. Up to {@link #NEAR_RINGS} blocks from
+ * the edge the distances come from an exact field. Further out they are interpolated between chunk centres of two
+ * coarse fields on the chunk grid: the distance to the nearest chunk with any block of the mask for blocks outside of
+ * it, and the distance to the nearest chunk that is not completely inside the mask for blocks inside. That is within
+ * {@link #SLACK} blocks of the exact distance and changes smoothly from block to block.
+ * <p>
+ * The rings of the exact field and the chunk grid do not grow with the width nearly as fast as rings at block
+ * resolution, so very wide expansions cost about as much as narrow ones. Tiles are put together when they are asked
+ * for, and only the most recently used are kept.
+ */
+public class PyramidDistanceField extends DistanceField {
+    public static final int NEAR_RINGS = 64;
+    public static final int CHUNK_BITS = 4;
+    // how far a distance from the chunk grid can be off, and how far a missing chunk of input can pull it
+    public static final int SLACK = 3 << CHUNK_BITS;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int CHUNKS_PER_TILE = TILE_SIZE >> CHUNK_BITS;
+    // one chunk centre beyond the tile on every side
+    private static final int GRID = CHUNKS_PER_TILE + 2;
+    private static final float FAR = 1e6f;
+    // per block column (or row) of a tile: the grid index of the chunk centre before it, and the weight of the next
+    private static final int[] CELL = new int[TILE_SIZE];
+    private static final float[] WEIGHT = new float[TILE_SIZE];
+
+    static {
+        for (int x = 0; x < TILE_SIZE; x++) {
+            float u = (x + 0.5f) / CHUNK - 0.5f;
+            int cell = (int) Math.floor(u);
+            CELL[x] = cell + 1;
+            WEIGHT[x] = u - cell;
+        }
+    }
+
+    private final DistanceField near, anyChunks, fullChunks;
+    private final int width;
+    private final Set<Long> keys;
+    private final Map<Long, short[]> resident = new LinkedHashMap<Long, short[]>(RESIDENT_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, short[]> eldest) {
+            return size() > RESIDENT_PAGES;
+        }
+    };
+
+    /**
+     * @param near       signed field of the mask with at least {@link #NEAR_RINGS} rings
+     * @param anyChunks  signed field of the first of {@link #chunkMasks}, with {@link #coarseRings} rings
+     * @param fullChunks signed field of the second of {@link #chunkMasks}, with {@link #coarseRings} rings
+     */
+    public PyramidDistanceField(BlockMask mask, int width, DistanceField near, DistanceField anyChunks,
+                                DistanceField fullChunks) {
+        super(Math.min(width, UNREACHED - 2), mask, null);
+        this.near = near;
+        this.anyChunks = anyChunks;
+        this.fullChunks = fullChunks;
+        this.width = getRings();
+
+        // every tile the exact field reached, and every tile with a chunk in reach of the chunk grid
+        keys = new HashSet<>(near.tileKeys());
+        for (long coarseKey : anyChunks.tileKeys()) {
+            short[] distances = anyChunks.tileDistances(coarseKey);
+            int originX = BlockMask.tileX(coarseKey) << TILE_SIZE_BITS;
+            int originY = BlockMask.tileY(coarseKey) << TILE_SIZE_BITS;
+            for (int i = 0; i < distances.length; i++) {
+                if (distances[i] <= 0 || distances[i] == UNREACHED) continue;
+                int chunkX = originX + (i & (TILE_SIZE - 1)), chunkY = originY + (i >> TILE_SIZE_BITS);
+                keys.add(BlockMask.tileKey(chunkX >> (TILE_SIZE_BITS - CHUNK_BITS),
+                        chunkY >> (TILE_SIZE_BITS - CHUNK_BITS)));
+            }
+        }
+    }
+
+    /**
+     * @return rings the chunk grid needs to cover the width, with room for the error of its distances
+     */
+    public static int coarseRings(int width) {
+        return (width + CHUNK - 1) / CHUNK + 3;
+    }
+
+    /**
+     * @return the mask on the chunk grid, one block per chunk: chunks with any block of the mask, and chunks that are
+     * completely inside of it
+     */
+    public static BlockMask[] chunkMasks(BlockMask mask) {
+        BlockMask any = new BlockMask(), full = new BlockMask();
+        for (long key : mask.tileKeys()) {
+            long[] words = mask.tileWords(key);
+            int chunkOriginX = BlockMask.tileX(key) * CHUNKS_PER_TILE;
+            int chunkOriginY = BlockMask.tileY(key) * CHUNKS_PER_TILE;
+            for (int cy = 0; cy < CHUNKS_PER_TILE; cy++)
+                for (int cx = 0; cx < CHUNKS_PER_TILE; cx++) {
+                    int shift = (cx << CHUNK_BITS) & 63;
+                    boolean anySet = false, allSet = true;
+                    for (int y = cy << CHUNK_BITS; y < (cy + 1) << CHUNK_BITS; y++) {
+                        long bits = (words[y * BlockMask.WORDS_PER_ROW + (cx << CHUNK_BITS >> 6)] >>> shift) & 0xFFFF;
+                        anySet |= bits != 0;
+                        allSet &= bits == 0xFFFF;
+                    }
+                    if (anySet) any.add(chunkOriginX + cx, chunkOriginY + cy);
+                    if (allSet) full.add(chunkOriginX + cx, chunkOriginY + cy);
+                }
+        }
+        return new BlockMask[]{any, full};
+    }
+
+    @Override
+    public Set<Long> tileKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public short[] tileDistances(long key) {
+        checkOpen();
+        if (!keys.contains(key)) return null;
+        synchronized (resident) {
+            short[] distances = resident.get(key);
+            if (distances != null) return distances;
+        }
+        // put together outside of the lock, two threads doing the same tile get equal arrays
+        short[] exact = near.tileDistances(key);
+        float[] outside = grid(anyChunks, key, false);
+        float[] inside = exact == null ? null : grid(fullChunks, key, true);
+        short[] distances = new short[TILE_SIZE * TILE_SIZE];
+        for (int y = 0, i = 0; y < TILE_SIZE; y++)
+            for (int x = 0; x < TILE_SIZE; x++, i++) {
+                int distance = exact == null ? UNREACHED : exact[i];
+                // like a signed field, one ring deeper inside than outside
+                if (distance == UNREACHED) distance = far(outside, x, y, NEAR_RINGS + 1, width);
+                else if (distance == UNREACHED_INSIDE) distance = -far(inside, x, y, NEAR_RINGS + 2, width + 1);
+                distances[i] = (short) distance;
+            }
+        synchronized (resident) {
+            resident.put(key, distances);
+        }
+        return distances;
+    }
+
+    /**
+     * @return estimated distance in blocks at the chunk centres around the tile, row by row
+     */
+    private static float[] grid(DistanceField coarse, long key, boolean inside) {
+        float[] grid = new float[GRID * GRID];
+        int chunkX = BlockMask.tileX(key) * CHUNKS_PER_TILE - 1, chunkY = BlockMask.tileY(key) * CHUNKS_PER_TILE - 1;
+        for (int y = 0; y < GRID; y++)
+            for (int x = 0; x < GRID; x++) {
+                int distance = coarse.getDistance(chunkX + x, chunkY + y);
+                if (inside) distance = -distance;
+                // the chunk centre lies half a chunk from the far side of the nearest chunk on average
+                grid[y * GRID + x] = distance == UNREACHED ? FAR : distance <= 0 ? 0 : distance * CHUNK - CHUNK / 2f;
+            }
+        return grid;
+    }
+
+    /**
+     * @return the interpolated distance of a block, at least min, {@link #UNREACHED} beyond max
+     */
+    private static int far(float[] grid, int x, int y, int min, int max) {
+        int cell = CELL[y] * GRID + CELL[x];
+        float wx = WEIGHT[x], wy = WEIGHT[y];
+        float top = grid[cell] + (grid[cell + 1] - grid[cell]) * wx;
+        float bottom = grid[cell + GRID] + (grid[cell + GRID + 1] - grid[cell + GRID]) * wx;
+        int distance = Math.max(min, Math.round(top + (bottom - top) * wy));
+        return distance > max ? UNREACHED : distance;
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return near.isOffHeap();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return near.estimatedBytes() + anyChunks.estimatedBytes() + fullChunks.estimatedBytes() +
+                (long) Math.min(keys.size(), RESIDENT_PAGES) * TILE_SIZE * TILE_SIZE * 2L + keys.size() * 64L;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return near.offHeapBytes();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return near.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            near.close();
+        } finally {
+            anyChunks.close();
+            fullChunks.close();
+        }
+    }
+}
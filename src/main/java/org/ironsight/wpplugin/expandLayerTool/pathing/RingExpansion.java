@@ -0,0 +1,48 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+/**
+ * Grows a set of seed blocks ring by ring. Ring 0 are the seeds, ring i are the blocks that are first reached after
+ * i steps to one of the 8 neighbours, never stepping onto a restricted block.
+ */
+public interface RingExpansion {
+    void forEachRing(int amountRings, RingVisitor visitor);
+
+    /**
+     * visit the rings in parts: a ring can come in several parts with disjoint tiles, the rings in any order and from
+     * several threads at once. for visitors that only look at the blocks of a ring, not at the ring as a whole.
+     */
+    default void forEachRingPart(int amountRings, RingVisitor visitor) {
+        forEachRing(amountRings, visitor);
+    }
+
+    /**
+     * builds an expansion, for example of one shard of a {@link ShardedExpansion}
+     */
+    interface Factory {
+        RingExpansion create(BlockMask seeds, BlockMask restriction, int amountRings);
+
+        /**
+         * @return how many blocks a block of the last of amountRings rings can be away from its seed
+         */
+        default int reach(int amountRings) {
+            return amountRings;
+        }
+    }
+
+    enum Engine implements Factory {
+        RING_FINDER, DISTANCE_TRANSFORM, BIT_DILATION;
+
+        @Override
+        public RingExpansion create(BlockMask seeds, BlockMask restriction, int amountRings) {
+            switch (this) {
+                case RING_FINDER:
+                    return new RingFinder(seeds, restriction);
+                case DISTANCE_TRANSFORM:
+                    return new DistanceTransform(seeds, restriction, amountRings - 1);
+                case BIT_DILATION:
+                default:
+                    return new DilationRingFinder(seeds, restriction);
+            }
+        }
+    }
+}
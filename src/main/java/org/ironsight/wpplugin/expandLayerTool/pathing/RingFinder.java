@@ -1,49 +1,65 @@
 package org.ironsight.wpplugin.expandLayerTool.pathing;
 
-import java.awt.*;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-
-public class RingFinder {
-    public Set<Point> restriction = new HashSet<>();
-    HashMap<Integer, HashMap<Point, Float>> rings = new HashMap<>();
-
-    public RingFinder(HashMap<Point, Float> initialPoints, int amountRings) {
-        rings.put(0, initialPoints);
-        rings.put(1, findRingAround(initialPoints, initialPoints));
-        for (int i = 2; i < amountRings; i++) {
-            HashMap<Point, Float> nextRing = findRingAround(rings.get(i - 1), rings.get(i - 2));
-            rings.put(i, nextRing);
-        }
-    }
 
-    public RingFinder(HashMap<Point, Float> initialPoints, int amountRings, Set restrictions) {
+public class RingFinder implements RingExpansion {
+    public BlockMask restriction = new BlockMask();
+    private final BlockMask initialPoints;
+    HashMap<Integer, BlockMask> rings = new HashMap<>();
+
+    /**
+     * streaming finder, rings are only built when calling {@link #forEachRing(int, RingVisitor)}
+     */
+    public RingFinder(BlockMask initialPoints, BlockMask restrictions) {
+        this.initialPoints = initialPoints;
         restriction = restrictions;
-        rings.put(0, initialPoints);
-        rings.put(1, findRingAround(initialPoints, initialPoints));
-        for (int i = 2; i < amountRings; i++) {
-            HashMap<Point, Float> nextRing = findRingAround(rings.get(i - 1), rings.get(i - 2));
-            rings.put(i, nextRing);
+    }
+
+    public RingFinder(BlockMask initialPoints, int amountRings) {
+        this(initialPoints, amountRings, new BlockMask());
+    }
+
+    public RingFinder(BlockMask initialPoints, int amountRings, BlockMask restrictions) {
+        this(initialPoints, restrictions);
+        forEachRing(Math.max(amountRings, 2), rings::put);
+    }
+
+    /**
+     * build the rings 0 to amountRings-1 and hand each one to the visitor as soon as it is done. only the last two
+     * rings are kept alive while the next one is built.
+     */
+    @Override
+    public void forEachRing(int amountRings, RingVisitor visitor) {
+        if (amountRings <= 0) return;
+        visitor.visit(0, initialPoints);
+        BlockMask before = initialPoints, last = initialPoints;
+        for (int i = 1; i < amountRings; i++) {
+            BlockMask next = findRingAround(last, before);
+            visitor.visit(i, next);
+            before = last;
+            last = next;
         }
     }
 
-    private HashMap<Point, Float> findRingAround(HashMap<Point, Float> points, HashMap<Point, Float> ignore) {
-        HashMap<Point, Float> ring = new HashMap<Point, Float>(points.size());
-        for (Point parent : points.keySet()) {
-            for (int x : new int[]{-1, 0, 1})
-                for (int y : new int[]{-1, 0, 1}) {
-                    Point thisP = new Point(parent.x + x, parent.y + y);
-                    if (!ignore.containsKey(thisP) && !points.containsKey(thisP) && !restriction.contains(thisP)) {
-                        Float z = points.get(parent);
-                        ring.put(thisP, z);
+    private BlockMask findRingAround(BlockMask points, BlockMask ignore) {
+        BlockMask ring = new BlockMask();
+        points.forEach((parentX, parentY) -> {
+            for (int x = -1; x <= 1; x++)
+                for (int y = -1; y <= 1; y++) {
+                    int thisX = parentX + x, thisY = parentY + y;
+                    if (!ignore.contains(thisX, thisY) && !points.contains(thisX, thisY) && !restriction.contains(thisX,
+                            thisY)) {
+                        ring.add(thisX, thisY);
                     }
                 }
-        }
+        });
         return ring;
     }
 
-    public HashMap<Point, Float> ring(int idx) {
+    /**
+     * @return the blocks of this ring. the mask is shared with the finder and must not be modified.
+     */
+    public BlockMask ring(int idx) {
         return rings.get(idx);
     }
 }
@@ -0,0 +1,9 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+/**
+ * Receives the rings of an expansion one by one, in order, as soon as they are built. The ring is only valid during
+ * the call, the expansion may reuse or drop it afterwards.
+ */
+public interface RingVisitor {
+    void visit(int ringIndex, BlockMask ring);
+}
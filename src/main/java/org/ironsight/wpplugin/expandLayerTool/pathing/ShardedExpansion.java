@@ -0,0 +1,130 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask.*;
+import static org.pepsoft.worldpainter.Constants.TILE_SIZE;
+
+/**
+ * Runs another engine in parallel on square shards of tiles. Every shard gets a copy of the seeds and restrictions of
+ * its neighbours up to the {@link Factory#reach reach} of the rings away (the halo), expands on its own and only
+ * keeps the rings inside its own tiles. A block at distance d only depends on blocks at most its reach away, so the
+ * merged rings are exactly the same as the ones of a single expansion over the whole map.
+ * <p>
+ * Nothing is expanded before the rings are asked for. {@link #forEachRingPart} hands every shard's part of a ring to
+ * the visitor as soon as the shard has it, so only the shards that are running are held in memory at a time. Only
+ * {@link #forEachRing} merges the whole map.
+ */
+public class ShardedExpansion implements RingExpansion {
+    public static final int DEFAULT_SHARD_TILES = 8;
+    private final BlockMask seeds, restriction;
+    private final Factory engine;
+    private final ForkJoinPool pool;
+    private final int shardTiles;
+
+    public ShardedExpansion(BlockMask seeds, BlockMask restriction, Factory engine) {
+        this(seeds, restriction, engine, ForkJoinPool.commonPool(), DEFAULT_SHARD_TILES);
+    }
+
+    /**
+     * @param seeds       only read, and only while the rings are visited
+     * @param restriction only read, and only while the rings are visited
+     */
+    public ShardedExpansion(BlockMask seeds, BlockMask restriction, Factory engine, ForkJoinPool pool,
+                            int shardTiles) {
+        this.seeds = seeds;
+        this.restriction = restriction;
+        this.engine = engine;
+        this.pool = pool;
+        this.shardTiles = shardTiles;
+    }
+
+    /**
+     * visit the whole rings in order. merges all shards first, {@link #forEachRingPart} is cheaper if the visitor does
+     * not need whole rings.
+     */
+    @Override
+    public void forEachRing(int amountRings, RingVisitor visitor) {
+        BlockMask[] rings = new BlockMask[Math.max(amountRings, 0)];
+        for (int i = 0; i < rings.length; i++)
+            rings[i] = new BlockMask();
+        // shards own disjoint tiles, so the merged rings do not depend on the order the shards finish in
+        forEachRingPart(amountRings, (i, part) -> {
+            synchronized (rings) {
+                for (long key : part.tileKeys())
+                    rings[i].putTile(key, part.tileWords(key));
+            }
+        });
+        for (int i = 0; i < rings.length; i++)
+            visitor.visit(i, rings[i]);
+    }
+
+    /**
+     * expand all shards, and hand the rings of every shard to the visitor, clipped to the tiles of the shard. the
+     * parts of one shard come in ring order, the shards run at the same time: the visitor is called from the threads
+     * of the pool, and has to be thread safe.
+     */
+    @Override
+    public void forEachRingPart(int amountRings, RingVisitor visitor) {
+        if (amountRings <= 0) return;
+        final int haloTiles = (engine.reach(amountRings) + TILE_SIZE - 1) / TILE_SIZE;
+
+        // every shard that lies within the halo of a seed tile, in a fixed order
+        Set<Long> shards = new LinkedHashSet<>();
+        for (long key : sortedKeys(seeds.tileKeys())) {
+            int tx = tileX(key), ty = tileY(key);
+            for (int sx = Math.floorDiv(tx - haloTiles, shardTiles); sx <= Math.floorDiv(tx + haloTiles, shardTiles);
+                 sx++)
+                for (int sy = Math.floorDiv(ty - haloTiles, shardTiles); sy <= Math.floorDiv(ty + haloTiles,
+                        shardTiles); sy++)
+                    shards.add(tileKey(sx, sy));
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(shards.size());
+        for (long shard : shards) {
+            ForkJoinTask<?> task = ForkJoinTask.adapt(() -> expandShard(amountRings, tileX(shard) * shardTiles,
+                    tileY(shard) * shardTiles, haloTiles, visitor));
+            tasks.add(task);
+            pool.execute(task);
+        }
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+    }
+
+    private static List<Long> sortedKeys(Set<Long> keys) {
+        List<Long> sorted = new ArrayList<>(keys);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    /**
+     * expand the seeds of one shard plus its halo, and visit the rings cut back to the tiles of the shard
+     */
+    private void expandShard(int amountRings, int firstTileX, int firstTileY, int haloTiles, RingVisitor visitor) {
+        BlockMask localSeeds = new BlockMask(), localRestriction = new BlockMask();
+        for (int tx = firstTileX - haloTiles; tx < firstTileX + shardTiles + haloTiles; tx++)
+            for (int ty = firstTileY - haloTiles; ty < firstTileY + shardTiles + haloTiles; ty++) {
+                long key = tileKey(tx, ty);
+                long[] words = seeds.tileWords(key);
+                if (words != null) localSeeds.putTile(key, words.clone());
+                words = restriction.tileWords(key);
+                if (words != null) localRestriction.putTile(key, words.clone());
+            }
+        if (localSeeds.isEmpty()) return;
+
+        engine.create(localSeeds, localRestriction, amountRings).forEachRing(amountRings, (i, ring) -> {
+            BlockMask clipped = new BlockMask();
+            for (long key : ring.tileKeys()) {
+                int tx = tileX(key), ty = tileY(key);
+                if (tx >= firstTileX && tx < firstTileX + shardTiles && ty >= firstTileY && ty < firstTileY + shardTiles)
+                    clipped.putTile(key, ring.tileWords(key).clone());
+            }
+            if (!clipped.isEmpty()) visitor.visit(i, clipped);
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cost of a step between two neighbouring blocks, from the terrain height of both. A step on flat ground costs
+ * {@link #FLAT} units, one ring. Climbing costs more the steeper it is, going downhill costs less, down to half a
+ * ring, and a step that climbs or drops more than the cliff height can not be taken at all. Costs are whole units, so
+ * a {@link GeodesicExpansion} can keep its queue in buckets.
+ * <p>
+ * Heights are read once per tile and shared by all threads.
+ */
+public class TerrainCost {
+    public static final int FLAT = 8;
+    public static final int MIN_STEP = FLAT / 2;
+    public static final int IMPASSABLE = -1;
+    private static final float[] MISSING = new float[0];
+    private final Heights heights;
+    private final float uphill, cliff;
+    private final ConcurrentHashMap<Long, float[]> tiles = new ConcurrentHashMap<>();
+
+    /**
+     * @param uphill extra cost of climbing one block, in rings
+     * @param cliff  the highest climb or drop of a single step
+     */
+    public TerrainCost(Heights heights, float uphill, float cliff) {
+        this.heights = heights;
+        this.uphill = Math.max(0, uphill);
+        this.cliff = Math.max(0, cliff);
+    }
+
+    /**
+     * @return how many blocks a block of the last of amountRings rings can be away from its seed, going downhill all
+     * the way
+     */
+    public static int reach(int amountRings) {
+        return (int) Math.min((long) amountRings * FLAT / MIN_STEP, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return units of a step from one height to the other, {@link #IMPASSABLE} for a cliff
+     */
+    public int step(float from, float to) {
+        float rise = to - from;
+        if (Math.abs(rise) > cliff) return IMPASSABLE;
+        float rings = rise > 0 ? 1 + uphill * rise : 1 - 0.5f * Math.min(-rise, 1);
+        return Math.max(MIN_STEP, Math.round(FLAT * rings));
+    }
+
+    /**
+     * @return the most a step can cost
+     */
+    public int maxStep() {
+        return Math.max(FLAT, Math.round(FLAT * (1 + uphill * cliff)));
+    }
+
+    /**
+     * @return heights of the tile, row by row, null if it is not part of the map
+     */
+    public float[] tile(long key) {
+        float[] tile = tiles.computeIfAbsent(key, k -> {
+            float[] read = heights.tileHeights(k);
+            return read == null ? MISSING : read;
+        });
+        return tile == MISSING ? null : tile;
+    }
+
+    public interface Heights {
+        /**
+         * @return the terrain height of every block of the tile, row by row, null if the tile is not part of the map
+         */
+        float[] tileHeights(long key);
+    }
+}
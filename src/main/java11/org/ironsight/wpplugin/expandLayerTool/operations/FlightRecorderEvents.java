@@ -0,0 +1,111 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The flight recorder events of {@link RunEvents}. Only loaded by it, once JFR is known to be there.
+ */
+final class FlightRecorderEvents implements RunEvents.Recorder {
+    @Override
+    public Object beginPhase() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPhase(Object started, RunProgress.Phase phase, int steps) {
+        PhaseEvent event = (PhaseEvent) started;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.phase = phase.name();
+        event.steps = steps;
+        event.commit();
+    }
+
+    @Override
+    public void commitRun(RunStats stats) {
+        RunEvent event = new RunEvent();
+        if (!event.shouldCommit()) return;
+        if (stats.options != null) {
+            event.width = stats.options.width;
+            event.direction = stats.options.dir.name();
+            event.engine = stats.options.engine.name();
+            event.streaming = stats.options.streaming;
+            event.offHeap = stats.options.offHeap;
+        }
+        event.wallTime = stats.getTotalMillis() * 1000000;
+        event.blocksScanned = stats.getBlocksScanned();
+        event.seeds = stats.getSeeds();
+        event.rings = stats.getBlocksPerRing().length;
+        event.peakFrontier = stats.getPeakFrontier();
+        event.blocksPainted = stats.getBlocksPainted();
+        event.tilesWritten = stats.getTilesWritten();
+        event.cachedField = stats.isCachedField();
+        event.commit();
+        long[] rings = stats.getBlocksPerRing();
+        for (int i = 0; i < rings.length; i++) {
+            RingEvent ring = new RingEvent();
+            ring.ring = i;
+            ring.blocks = rings[i];
+            ring.commit();
+        }
+    }
+
+    @Name("org.ironsight.expandLayer.Phase")
+    @Label("Expand Layer Phase")
+    @Category({"WorldPainter", "Expand Layer"})
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Steps")
+        int steps;
+    }
+
+    @Name("org.ironsight.expandLayer.Run")
+    @Label("Expand Layer Run")
+    @Category({"WorldPainter", "Expand Layer"})
+    static class RunEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Direction")
+        String direction;
+        @Label("Engine")
+        String engine;
+        @Label("Streaming")
+        boolean streaming;
+        @Label("Off-heap")
+        boolean offHeap;
+        @Label("Cached Field")
+        boolean cachedField;
+        @Label("Wall Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long wallTime;
+        @Label("Blocks Scanned")
+        long blocksScanned;
+        @Label("Seeds")
+        long seeds;
+        @Label("Rings")
+        int rings;
+        @Label("Peak Frontier")
+        long peakFrontier;
+        @Label("Blocks Painted")
+        long blocksPainted;
+        @Label("Tiles Written")
+        long tilesWritten;
+    }
+
+    @Name("org.ironsight.expandLayer.Ring")
+    @Label("Expand Layer Ring")
+    @Category({"WorldPainter", "Expand Layer"})
+    static class RingEvent extends Event {
+        @Label("Ring")
+        int ring;
+        @Label("Blocks")
+        long blocks;
+    }
+}
@@ -0,0 +1,83 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.ironsight.wpplugin.expandLayerTool.operations.EdgeExpansionTest.points;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrushExpansionTest {
+    @Test
+    void discHoldsBlocksWithinRadius() {
+        BlockMask disc = BrushExpansion.disc(127, -3, 9);
+        int count = 0;
+        for (int x = 100; x < 160; x++)
+            for (int y = -40; y < 40; y++) {
+                boolean inside = (x - 127) * (x - 127) + (y + 3) * (y + 3) <= 81;
+                assertEquals(inside, disc.contains(x, y), x + "," + y);
+                if (inside) count++;
+            }
+        assertEquals(count, disc.size());
+    }
+
+    @Test
+    void dabMatchesWholeMapInsideBrush() throws IOException, InterruptedException {
+        BlockMask input = EdgeExpansionTest.discs(6);
+        for (EdgeExpansionOptions.Direction dir : EdgeExpansionOptions.Direction.values()) {
+            EdgeExpansionOptions options = new EdgeExpansionOptions();
+            options.dir = dir;
+            options.width = 25;
+            options.seed = 9;
+            MaskTileSource source = new MaskTileSource();
+            input.forEach((x, y) -> source.annotation(EdgeExpansion.CYAN).add(x, y));
+            BlockMask whole = new EdgeExpansion().compute(source, options, new RunProgress());
+
+            BrushExpansion stroke = new BrushExpansion(source, options);
+            BlockMask expected = new BlockMask();
+            int[][] dabs = {{0, 0}, {60, 20}, {-150, 300}, {250, -128}};
+            for (int[] dab : dabs) {
+                // expanding leaves the source alone, only painting changes it
+                long selected = source.selection().size();
+                BrushExpansion.Dab expanded = stroke.expand(dab[0], dab[1], 70, false);
+                assertEquals(selected, source.selection().size());
+                stroke.paint(expanded);
+                BlockMask brush = BrushExpansion.disc(dab[0], dab[1], 70);
+                whole.forEach((x, y) -> {
+                    if (brush.contains(x, y)) expected.add(x, y);
+                });
+            }
+            assertFalse(expected.isEmpty(), dir.name());
+            assertEquals(points(expected), points(source.selection()), dir.name());
+
+            stroke.dab(0, 0, 70, true);
+            source.selection().forEach((x, y) -> assertTrue(x * x + y * y > 70 * 70));
+        }
+    }
+
+    @Test
+    void mergedDabsPaintLikeSeparateDabs() throws IOException, InterruptedException {
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 25;
+        options.seed = 3;
+        MaskTileSource separate = new MaskTileSource();
+        MaskTileSource merged = new MaskTileSource();
+        for (int x = -40; x <= 40; x++)
+            for (int y = -40; y <= 40; y++)
+                if (x * x + y * y <= 40 * 40) {
+                    separate.annotation(EdgeExpansion.CYAN).add(x, y);
+                    merged.annotation(EdgeExpansion.CYAN).add(x, y);
+                }
+        // two overlapping dabs that both touch the edge of the disc
+        BrushExpansion stroke = new BrushExpansion(separate, options);
+        stroke.paint(stroke.expand(40, 0, 30, false));
+        stroke.paint(stroke.expand(30, 30, 30, false));
+
+        BlockMask footprint = BrushExpansion.addDisc(BrushExpansion.disc(40, 0, 30), 30, 30, 30);
+        BrushExpansion both = new BrushExpansion(merged, options);
+        both.paint(both.expand(footprint, false));
+        assertFalse(merged.selection().isEmpty());
+        assertEquals(points(separate.selection()), points(merged.selection()));
+    }
+}
@@ -0,0 +1,56 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DitherTextureTest {
+    private static void assertPermutation(DitherTexture texture) {
+        // every threshold (rank + 0.5) / 4096 appears exactly once
+        boolean[] seen = new boolean[DitherTexture.SIZE * DitherTexture.SIZE];
+        for (int y = 0; y < DitherTexture.SIZE; y++)
+            for (int x = 0; x < DitherTexture.SIZE; x++) {
+                int rank = (int) (texture.threshold(x, y) * seen.length);
+                assertFalse(seen[rank], "rank " + rank + " twice");
+                seen[rank] = true;
+            }
+    }
+
+    @Test
+    void texturesHoldEveryThresholdOnce() {
+        assertPermutation(DitherTexture.BAYER);
+        assertPermutation(DitherTexture.blueNoise());
+    }
+
+    @Test
+    void bayerMatchesClassicMatrix() {
+        // the finest level is the most significant, so the top left 4x4 corner holds the 4x4 matrix, scaled up
+        int[][] bayer4 = {{0, 8, 2, 10}, {12, 4, 14, 6}, {3, 11, 1, 9}, {15, 7, 13, 5}};
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 4; x++)
+                assertEquals(bayer4[y][x], (int) (DitherTexture.BAYER.threshold(x, y) * 16));
+    }
+
+    @Test
+    void textureTiles() {
+        DitherTexture texture = DitherTexture.blueNoise();
+        assertEquals(texture.threshold(5, 9), texture.threshold(5 + 64, 9 - 128));
+        assertEquals(texture.threshold(-1, -1), texture.threshold(63, 63));
+    }
+
+    @Test
+    void ditheredRingHasExactDensity() {
+        short[] distances = new short[128 * 128];
+        float[] chances = {0.3f};
+        for (DitherTexture.Pattern pattern : new DitherTexture.Pattern[]{DitherTexture.Pattern.BAYER,
+                DitherTexture.Pattern.BLUE_NOISE}) {
+            long[] words = new Sprayer(chances, 1, true, pattern).sprayTile(BlockMask.tileKey(2, -1), distances);
+            int count = 0;
+            for (long word : words)
+                count += Long.bitCount(word);
+            // a 128x128 tile holds four whole textures
+            assertEquals(Math.round(0.3 * 4096) * 4, count, 4);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceField;
+import org.ironsight.wpplugin.expandLayerTool.pathing.DistanceFieldCache;
+import org.ironsight.wpplugin.expandLayerTool.pathing.RingFinder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeExpansionTest {
+    private static final Gradient FULL = new Gradient(new float[]{0.5f, 1f}, new float[]{1f, 1f});
+
+    /**
+     * discs spread over many tile rows and columns, some touching tile borders
+     */
+    static BlockMask discs(long seed) {
+        Random r = new Random(seed);
+        BlockMask points = new BlockMask();
+        for (int i = 0; i < 12; i++) {
+            int cx = r.nextInt(600) - 200, cy = r.nextInt(1200) - 400, radius = 2 + r.nextInt(40);
+            for (int x = -radius; x <= radius; x++)
+                for (int y = -radius; y <= radius; y++)
+                    if (x * x + y * y <= radius * radius) points.add(cx + x, cy + y);
+        }
+        return points;
+    }
+
+    static Set<Long> points(BlockMask mask) {
+        Set<Long> points = new HashSet<>();
+        mask.forEach((x, y) -> points.add(BlockMask.tileKey(x, y)));
+        return points;
+    }
+
+    private static MaskTileSource source(BlockMask input) {
+        MaskTileSource source = new MaskTileSource();
+        input.forEach((x, y) -> source.annotation(EdgeExpansion.CYAN).add(x, y));
+        return source;
+    }
+
+    @Test
+    void outwardPaintsBandAroundInput() throws IOException, InterruptedException {
+        BlockMask square = new BlockMask();
+        for (int x = 120; x < 140; x++)
+            for (int y = -10; y < 10; y++)
+                square.add(x, y);
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 5;
+        options.gradient = FULL;
+        BlockMask painted = new EdgeExpansion().compute(source(square), options, new RunProgress());
+
+        BlockMask expected = new BlockMask();
+        for (int x = 115; x < 145; x++)
+            for (int y = -15; y < 15; y++)
+                if (!square.contains(x, y)) expected.add(x, y);
+        assertEquals(points(expected), points(painted));
+    }
+
+    /**
+     * the rings of a direction the way they were found before the signed field: a few ring passes around the input
+     * to find its edge, then an expansion from there with the other side restricted
+     */
+    private static BlockMask[] ringPasses(BlockMask input, EdgeExpansionOptions.Direction dir, int width) {
+        RingFinder start = new RingFinder(input, 3);
+        BlockMask edge = start.ring(1), restrictions = new BlockMask();
+        switch (dir) {
+            case OUTWARD:
+                restrictions = start.ring(0);
+                break;
+            case INWARD:
+                edge = new RingFinder(start.ring(1), 1, start.ring(2)).ring(1);
+                restrictions = start.ring(1);
+                break;
+            case OUT_AND_KEEP:
+                edge = input;
+                break;
+        }
+        BlockMask[] rings = new BlockMask[width];
+        new RingFinder(edge, restrictions).forEachRing(width, (i, ring) -> rings[i] = ring);
+        return rings;
+    }
+
+    @Test
+    void signedFieldMatchesRingPasses() throws IOException {
+        BlockMask input = discs(11);
+        // a hole, a thin line and a lone block
+        for (int x = 300; x < 340; x++)
+            for (int y = 0; y < 40; y++)
+                if (x < 315 || x > 318 || y < 15 || y > 18) input.add(x, y);
+        for (int x = 120; x < 136; x++)
+            input.add(x, 127);
+        input.add(-129, -1);
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        for (int variant = 0; variant < 4; variant++) {
+            // sharded or plain, on or off the heap
+            options.parallel = variant < 2;
+            options.offHeap = variant % 2 == 1;
+            try (DistanceField field = EdgeExpansion.expand(input, 9, options)) {
+                assertTrue(field.isSigned());
+                for (EdgeExpansionOptions.Direction dir : EdgeExpansionOptions.Direction.values()) {
+                    BlockMask[] expected = ringPasses(input, dir, 9);
+                    for (int ring = 0; ring < 9; ring++) {
+                        final int r = ring;
+                        expected[ring].forEach((x, y) -> assertEquals(r, dir.ring(field.getDistance(x, y)),
+                                dir + " " + x + "," + y));
+                    }
+                    // and no other block is in any ring
+                    long expectedSize = 0;
+                    for (BlockMask ring : expected)
+                        expectedSize += ring.size();
+                    assertEquals(expectedSize, countRings(field, dir), dir.name());
+                }
+            }
+        }
+    }
+
+    private static long countRings(DistanceField field, EdgeExpansionOptions.Direction dir) {
+        long[] counts = new long[9];
+        field.countRings(field.tileKeys(), dir::ring, counts);
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        return total;
+    }
+
+    @Test
+    void streamingMatchesWholeMap() throws IOException, InterruptedException {
+        BlockMask input = discs(7);
+        for (EdgeExpansionOptions.Direction dir : EdgeExpansionOptions.Direction.values())
+            for (int width : new int[]{20, 150}) {
+                EdgeExpansionOptions options = new EdgeExpansionOptions();
+                options.dir = dir;
+                options.width = width;
+                options.seed = 3;
+                // the wide one takes its far field from the chunk grid
+                options.multiResolution = true;
+                BlockMask whole = new EdgeExpansion().compute(source(input), options, new RunProgress());
+                options.streaming = true;
+                BlockMask streamed = new EdgeExpansion().compute(source(input), options, new RunProgress());
+                options.offHeap = true;
+                BlockMask offHeap = new EdgeExpansion().compute(source(input), options, new RunProgress());
+                assertFalse(whole.isEmpty());
+                assertEquals(points(whole), points(streamed), dir + " " + width);
+                assertEquals(points(whole), points(offHeap), dir + " " + width);
+            }
+    }
+
+    @Test
+    void followingTerrainStreamsAndDiffersFromFlat() throws IOException, InterruptedException {
+        BlockMask input = discs(7);
+        MaskTileSource source = source(input);
+        for (int tx = -6; tx < 8; tx++)
+            for (int ty = -8; ty < 10; ty++) {
+                float[] heights = new float[128 * 128];
+                for (int i = 0; i < heights.length; i++) {
+                    int x = tx * 128 + (i & 127), y = ty * 128 + (i >> 7);
+                    heights[i] = (float) (20 * Math.sin(x / 23.0) * Math.cos(y / 31.0));
+                }
+                source.setHeights(BlockMask.tileKey(tx, ty), heights);
+            }
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.dir = EdgeExpansionOptions.Direction.BOTH;
+        options.width = 25;
+        options.seed = 3;
+        BlockMask flat = new EdgeExpansion().compute(source, options, new RunProgress());
+        options.followTerrain = true;
+        BlockMask whole = new EdgeExpansion().compute(source, options, new RunProgress());
+        options.streaming = true;
+        BlockMask streamed = new EdgeExpansion().compute(source, options, new RunProgress());
+        assertFalse(whole.isEmpty());
+        assertNotEquals(points(flat), points(whole));
+        assertEquals(points(whole), points(streamed));
+    }
+
+    @Test
+    void sharedFieldOutlivesEvictionByAnotherRun() throws IOException, InterruptedException {
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 20;
+        options.offHeap = true;
+        BlockMask first = discs(8), second = discs(9);
+        long budget;
+        try (DistanceField a = EdgeExpansion.expand(first, 20, options);
+             DistanceField b = EdgeExpansion.expand(second, 20, options)) {
+            // room for one field at a time
+            budget = Math.max(a.estimatedBytes(), b.estimatedBytes());
+        }
+        EdgeExpansion expansion = new EdgeExpansion(new DistanceFieldCache(budget));
+        BlockMask expected = expansion.compute(source(first), options, new RunProgress());
+
+        // the second run evicts the cached field of the first while the first still sprays from it
+        BlockMask[] nested = new BlockMask[1];
+        RunProgress progress = new RunProgress() {
+            @Override
+            public void start(Phase phase, int total) {
+                super.start(phase, total);
+                if (phase != Phase.APPLY || nested[0] != null) return;
+                try {
+                    nested[0] = expansion.compute(source(second), options, new RunProgress());
+                } catch (IOException | InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+        BlockMask painted = expansion.compute(source(first), options, progress);
+        assertTrue(progress.getStats().isCachedField());
+        assertFalse(nested[0].isEmpty());
+        assertEquals(points(expected), points(painted));
+    }
+
+    @Test
+    void runPaintsOutputAndClearsInput() throws IOException, InterruptedException {
+        MaskTileSource source = source(discs(2));
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 8;
+        options.cleanInput = true;
+        BlockMask expected = new EdgeExpansion().compute(source, options, new RunProgress());
+        new EdgeExpansion().run(source, options, new RunProgress());
+        assertTrue(source.annotation(EdgeExpansion.CYAN).isEmpty());
+        assertEquals(points(expected), points(source.selection()));
+    }
+
+    @Test
+    void cancelledRunLeavesMapAlone() {
+        BlockMask input = discs(4);
+        MaskTileSource source = source(input);
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.cleanInput = true;
+        RunProgress progress = new RunProgress();
+        progress.cancel();
+        assertThrows(CancellationException.class, () -> new EdgeExpansion().run(source,
+                options, progress));
+        assertEquals(points(input), points(source.annotation(EdgeExpansion.CYAN)));
+        assertTrue(source.selection().isEmpty());
+    }
+
+    /**
+     * input and an old output of an earlier run, both cleaned by the run
+     */
+    private static MaskTileSource cleanedSource() {
+        MaskTileSource source = source(discs(4));
+        for (int x = 500; x < 520; x++)
+            source.selection().add(x, -300);
+        return source;
+    }
+
+    @Test
+    void cancelNeverLeavesMapHalfWritten() throws IOException, InterruptedException {
+        for (boolean streaming : new boolean[]{false, true}) {
+            EdgeExpansionOptions options = new EdgeExpansionOptions();
+            options.width = 12;
+            options.cleanInput = true;
+            options.cleanOutput = true;
+            options.streaming = streaming;
+            MaskTileSource written = cleanedSource();
+            new EdgeExpansion().run(written, options, new RunProgress());
+            assertTrue(written.annotation(EdgeExpansion.CYAN).isEmpty());
+            assertFalse(written.selection().contains(500, -300));
+
+            // cancelled while computing: nothing changed
+            for (RunProgress.Phase phase : new RunProgress.Phase[]{RunProgress.Phase.EXPAND, RunProgress.Phase.APPLY,
+                    RunProgress.Phase.STREAM}) {
+                if (streaming != (phase == RunProgress.Phase.STREAM)) continue;
+                MaskTileSource source = cleanedSource();
+                RunProgress progress = new RunProgress() {
+                    @Override
+                    public void start(Phase started, int total) {
+                        super.start(started, total);
+                        if (started == phase) cancel();
+                    }
+                };
+                assertThrows(CancellationException.class, () -> new EdgeExpansion().run(source, options, progress));
+                assertEquals(points(discs(4)), points(source.annotation(EdgeExpansion.CYAN)), phase.name());
+                assertEquals(points(cleanedSource().selection()), points(source.selection()), phase.name());
+            }
+
+            // cancelled while writing: the write goes through
+            RunProgress progress = new RunProgress();
+            MaskTileSource source = new MaskTileSource() {
+                @Override
+                public synchronized void paint(long key, long[] words, boolean selection, int annotationValue) {
+                    progress.cancel();
+                    super.paint(key, words, selection, annotationValue);
+                }
+            };
+            discs(4).forEach((x, y) -> source.annotation(EdgeExpansion.CYAN).add(x, y));
+            cleanedSource().selection().forEach(source.selection()::add);
+            new EdgeExpansion().run(source, options, progress);
+            assertTrue(progress.isCancelled());
+            assertTrue(source.annotation(EdgeExpansion.CYAN).isEmpty());
+            assertEquals(points(written.selection()), points(source.selection()));
+        }
+    }
+}
@@ -4,8 +4,51 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 class GradientTest {
+    private final Gradient gradient = new Gradient(new float[]{0.01f, 0.15f, 0.25f, 0.5f, 1f}, new float[]{1f, 0.4f,
+            0.2f, 0.1f, 0.03f});
 
     @Test
     void getValue() {
+        assertEquals(1f, gradient.getValue(0f));
+        assertEquals(1f, gradient.getValue(0.01f));
+        assertEquals(0.4f, gradient.getValue(0.1f));
+        assertEquals(0.4f, gradient.getValue(0.15f));
+        assertEquals(0.2f, gradient.getValue(0.2f));
+        assertEquals(0.1f, gradient.getValue(0.3f));
+        assertEquals(0.03f, gradient.getValue(0.75f));
+        assertEquals(0.03f, gradient.getValue(2f));
     }
-}
\ No newline at end of file
+
+    @Test
+    void interpolation() {
+        assertEquals(gradient.getValue(0.2f), gradient.getValue(0.2f, Gradient.Interpolation.STEP));
+        assertEquals(0.3f, gradient.getValue(0.2f, Gradient.Interpolation.LINEAR), 1e-6);
+        assertEquals(0.3f, gradient.getValue(0.2f, Gradient.Interpolation.SMOOTHSTEP), 1e-6);
+        assertEquals(0.38f, gradient.getValue(0.16f, Gradient.Interpolation.LINEAR), 1e-6);
+        assertTrue(gradient.getValue(0.16f, Gradient.Interpolation.SMOOTHSTEP) > 0.38f);
+        for (Gradient.Interpolation mode : Gradient.Interpolation.values()) {
+            assertEquals(1f, gradient.getValue(0f, mode));
+            assertEquals(0.1f, gradient.getValue(0.5f, mode));
+            assertEquals(0.03f, gradient.getValue(1.5f, mode));
+        }
+    }
+
+    @Test
+    void samplerMatchesReference() {
+        for (Gradient.Interpolation mode : Gradient.Interpolation.values()) {
+            GradientSampler sampler = gradient.compile(mode, GradientSampler.DEFAULT_RESOLUTION);
+            for (int i = 0; i <= sampler.getResolution(); i++) {
+                float x = (float) i / sampler.getResolution();
+                assertEquals(gradient.getValue(x, mode), sampler.sample(x), mode + " at " + x);
+            }
+            // in between table entries the error is bounded by the steepest slope of the gradient
+            for (int i = 0; i <= 1000; i++) {
+                float x = i / 1000f;
+                if (mode != Gradient.Interpolation.STEP)
+                    assertEquals(gradient.getValue(x, mode), sampler.sample(x), 0.01f, mode + " at " + x);
+            }
+            assertEquals(gradient.getValue(-1f, mode), sampler.sample(-1f));
+            assertEquals(gradient.getValue(3f, mode), sampler.sample(3f));
+        }
+    }
+}
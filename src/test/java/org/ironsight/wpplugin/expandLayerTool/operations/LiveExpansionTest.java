@@ -0,0 +1,95 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.ironsight.wpplugin.expandLayerTool.operations.EdgeExpansionTest.points;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveExpansionTest {
+    private static BlockMask expected(BlockMask input, EdgeExpansionOptions options) throws IOException,
+            InterruptedException {
+        MaskTileSource source = new MaskTileSource();
+        input.forEach((x, y) -> source.annotation(EdgeExpansion.CYAN).add(x, y));
+        return new EdgeExpansion().compute(source, options, new RunProgress());
+    }
+
+    @Test
+    void updatePatchesOnlyAroundChangedTiles() throws IOException, InterruptedException {
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 30;
+        options.seed = 5;
+        for (EdgeExpansionOptions.Direction dir : EdgeExpansionOptions.Direction.values()) {
+            options.dir = dir;
+            MaskTileSource source = new MaskTileSource();
+            BlockMask input = source.annotation(EdgeExpansion.CYAN);
+            EdgeExpansionTest.discs(3).forEach(input::add);
+            LiveExpansion live = new LiveExpansion(source, options);
+            live.start(new RunProgress());
+            assertEquals(points(expected(input, options)), points(source.selection()), dir.name());
+
+            // a new stroke far away, and a stroke that cuts through the existing input
+            Set<Long> changed = new HashSet<>();
+            for (int x = 1000; x < 1040; x++)
+                for (int y = 995; y < 1005; y++) {
+                    input.add(x, y);
+                    changed.add(BlockMask.tileKey(x >> 7, y >> 7));
+                }
+            for (int x = -200; x < 400; x++)
+                for (int y = 100; y < 104; y++) {
+                    if (input.remove(x, y)) changed.add(BlockMask.tileKey(x >> 7, y >> 7));
+                }
+            RunProgress progress = new RunProgress();
+            live.update(changed, progress);
+            assertEquals(points(expected(input, options)), points(source.selection()), dir.name());
+            assertEquals(points(source.selection()), points(live.getPainted()));
+            assertTrue(progress.getStats().getTilesWritten() > 0);
+
+            // nothing changed, nothing is written
+            progress = new RunProgress();
+            live.update(changed, progress);
+            assertEquals(0, progress.getStats().getTilesWritten());
+        }
+    }
+
+    @Test
+    void heightChangesPatchTheTerrainFollowingOutput() throws IOException, InterruptedException {
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 30;
+        options.seed = 5;
+        options.followTerrain = true;
+        MaskTileSource source = new MaskTileSource();
+        BlockMask input = source.annotation(EdgeExpansion.CYAN);
+        EdgeExpansionTest.discs(3).forEach(input::add);
+        LiveExpansion live = new LiveExpansion(source, options);
+        live.start(new RunProgress());
+        Set<Long> before = points(source.selection());
+
+        // a steep slope under some of the input
+        long key = input.tileKeys().iterator().next();
+        float[] heights = new float[128 * 128];
+        for (int i = 0; i < heights.length; i++)
+            heights[i] = (i & 127) * 3;
+        source.setHeights(key, heights);
+        live.update(Collections.singleton(key), new RunProgress());
+
+        MaskTileSource fresh = new MaskTileSource();
+        input.forEach((x, y) -> fresh.annotation(EdgeExpansion.CYAN).add(x, y));
+        fresh.setHeights(key, heights);
+        Set<Long> expected = points(new EdgeExpansion().compute(fresh, options, new RunProgress()));
+        assertNotEquals(before, expected);
+        assertEquals(expected, points(source.selection()));
+    }
+
+    @Test
+    void outputHasToBeAnotherLayer() {
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.inputFromSelection = true;
+        assertThrows(IllegalArgumentException.class, () -> new LiveExpansion(new MaskTileSource(), options));
+    }
+}
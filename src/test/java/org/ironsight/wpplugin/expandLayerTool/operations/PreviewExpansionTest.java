@@ -0,0 +1,43 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreviewExpansionTest {
+    private static final Gradient FULL = new Gradient(new float[]{0.5f, 1f}, new float[]{1f, 1f});
+
+    @Test
+    void samplesShowBandAroundInput() throws IOException {
+        MaskTileSource source = new MaskTileSource();
+        for (int x = 0; x < 64; x++)
+            for (int y = 0; y < 64; y++)
+                source.annotation(EdgeExpansion.CYAN).add(x, y);
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 16;
+        options.gradient = FULL;
+        PreviewExpansion preview = new PreviewExpansion(source, 4);
+        assertArrayEquals(new int[]{64, 64}, preview.centreOfInput(false), "middle of the only input tile");
+        assertNull(preview.centreOfInput(true));
+
+        // samples are 4x4 blocks, the input covers samples 0..15 and the band the 4 samples around it
+        float[] samples = preview.compute(32, 32, options);
+        int origin = 32 / 4 - PreviewExpansion.SIZE / 2;
+        for (int y = 0; y < PreviewExpansion.SIZE; y++)
+            for (int x = 0; x < PreviewExpansion.SIZE; x++) {
+                int sx = origin + x, sy = origin + y;
+                float expected = sx >= 0 && sx < 16 && sy >= 0 && sy < 16 ? PreviewExpansion.INPUT :
+                        sx >= -4 && sx < 20 && sy >= -4 && sy < 20 ? 1f : 0f;
+                assertEquals(expected, samples[y * PreviewExpansion.SIZE + x], sx + "," + sy);
+            }
+
+        options.dir = EdgeExpansionOptions.Direction.INWARD;
+        samples = preview.compute(32, 32, options);
+        assertEquals(1f, samples[(-origin) * PreviewExpansion.SIZE - origin], "edge of the input is painted");
+        assertEquals(PreviewExpansion.INPUT, samples[(8 - origin) * PreviewExpansion.SIZE + 8 - origin],
+                "middle of the input is out of reach");
+        assertEquals(0f, samples[0]);
+    }
+}
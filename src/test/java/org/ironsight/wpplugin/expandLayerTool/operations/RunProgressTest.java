@@ -0,0 +1,30 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunProgressTest {
+    @Test
+    void percentPerPhase() {
+        RunProgress progress = new RunProgress();
+        progress.start(RunProgress.Phase.SCAN, 4);
+        progress.step();
+        assertEquals(25, progress.getPercent());
+        progress.start(RunProgress.Phase.EXPAND, 0);
+        assertEquals(-1, progress.getPercent(), "unknown total");
+        assertEquals(RunProgress.Phase.EXPAND, progress.getPhase());
+    }
+
+    @Test
+    void cancelStopsAtNextStep() {
+        RunProgress progress = new RunProgress();
+        progress.start(RunProgress.Phase.APPLY, 10);
+        progress.step();
+        progress.cancel();
+        assertThrows(CancellationException.class, progress::step);
+        assertThrows(CancellationException.class, () -> progress.start(RunProgress.Phase.WRITE, 10));
+    }
+}
@@ -0,0 +1,73 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunStatsTest {
+    private static MaskTileSource source() {
+        MaskTileSource source = new MaskTileSource();
+        BlockMask input = EdgeExpansionTest.discs(5);
+        input.forEach((x, y) -> source.annotation(EdgeExpansion.CYAN).add(x, y));
+        return source;
+    }
+
+    @Test
+    void runCountsEveryPhase() throws IOException, InterruptedException {
+        MaskTileSource source = source();
+        long seeds = source.annotation(EdgeExpansion.CYAN).size();
+        EdgeExpansionOptions options = new EdgeExpansionOptions();
+        options.width = 12;
+        for (boolean streaming : new boolean[]{false, true}) {
+            options.streaming = streaming;
+            RunProgress progress = new RunProgress();
+            BlockMask painted = new EdgeExpansion().compute(source, options, progress);
+            RunStats stats = progress.getStats();
+            assertEquals(seeds, stats.getSeeds());
+            assertEquals(painted.size(), stats.getBlocksPainted());
+            assertEquals(12, stats.getBlocksPerRing().length);
+            assertTrue(stats.getPeakFrontier() > 0);
+            assertTrue(stats.getPhaseMillis(streaming ? RunProgress.Phase.STREAM : RunProgress.Phase.APPLY) >= 0);
+            assertEquals(-1, stats.getPhaseMillis(RunProgress.Phase.WRITE), "compute does not write");
+            assertTrue(stats.summary().contains("painted"));
+        }
+
+        RunProgress progress = new RunProgress();
+        new EdgeExpansion().run(source, options, progress);
+        assertTrue(progress.getStats().getTilesWritten() > 0);
+        assertTrue(progress.getStats().getPhaseMillis(RunProgress.Phase.WRITE) >= 0);
+    }
+
+    @Test
+    void runIsRecordedAsFlightRecorderEvents() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("expand-layer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.ironsight.expandLayer.Run");
+            recording.enable("org.ironsight.expandLayer.Phase");
+            recording.start();
+            EdgeExpansionOptions options = new EdgeExpansionOptions();
+            options.width = 7;
+            new EdgeExpansion().compute(source(), options, new RunProgress());
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent run = events.stream().filter(e -> e.getEventType().getName().endsWith("Run")).findFirst()
+                    .orElseThrow(AssertionError::new);
+            assertEquals(7, run.getInt("width"));
+            assertTrue(run.getLong("blocksPainted") > 0);
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().endsWith("Phase") &&
+                    "EXPAND".equals(e.getString("phase"))));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SprayHashTest {
+
+    @Test
+    void nextFloat() {
+        double sum = 0;
+        int below10 = 0, n = 0;
+        for (int x = -200; x < 200; x++)
+            for (int y = -200; y < 200; y++) {
+                float f = SprayHash.nextFloat(42, x, y);
+                assertTrue(f >= 0 && f < 1);
+                assertEquals(f, SprayHash.nextFloat(42, x, y));
+                sum += f;
+                if (f < 0.1f) below10++;
+                n++;
+            }
+        assertEquals(0.5, sum / n, 0.01);
+        assertEquals(0.1, (double) below10 / n, 0.01);
+        assertNotEquals(SprayHash.nextFloat(42, 3, 4), SprayHash.nextFloat(43, 3, 4));
+        assertNotEquals(SprayHash.nextFloat(42, 3, 4), SprayHash.nextFloat(42, 4, 3));
+    }
+}
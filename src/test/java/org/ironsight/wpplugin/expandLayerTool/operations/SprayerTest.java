@@ -0,0 +1,74 @@
+package org.ironsight.wpplugin.expandLayerTool.operations;
+
+import org.ironsight.wpplugin.expandLayerTool.pathing.BlockMask;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SprayerTest {
+    private static int painted(long[] words) {
+        int count = 0;
+        if (words != null) for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    @Test
+    void sparseMatchesDenseStatistics() {
+        // a tile with four rings, each a quarter of the blocks
+        short[] distances = new short[128 * 128];
+        for (int i = 0; i < distances.length; i++)
+            distances[i] = (short) (i % 4);
+        float[] chances = {0.03f, 0.1f, 0.2f, 0.5f};
+        Sprayer dense = new Sprayer(chances, 1, false), sparse = new Sprayer(chances, 1, true);
+
+        long denseTotal = 0, sparseTotal = 0;
+        int tiles = 200;
+        for (int t = 0; t < tiles; t++) {
+            long key = BlockMask.tileKey(t, -t);
+            denseTotal += painted(dense.sprayTile(key, distances));
+            sparseTotal += painted(sparse.sprayTile(key, distances));
+        }
+        double expected = tiles * distances.length / 4.0 * (0.03 + 0.1 + 0.2 + 0.5);
+        assertEquals(expected, denseTotal, expected * 0.01);
+        assertEquals(expected, sparseTotal, expected * 0.01);
+    }
+
+    @Test
+    void sparseRingsOnlyPaintTheirOwnBlocks() {
+        short[] distances = new short[128 * 128];
+        Arrays.fill(distances, Short.MAX_VALUE);
+        for (int i = 0; i < distances.length; i += 7)
+            distances[i] = 0;
+        long[] words = new Sprayer(new float[]{0.2f}, 5, true).sprayTile(BlockMask.tileKey(3, 4), distances);
+        assertTrue(painted(words) > 0);
+        for (int i = 0; i < distances.length; i++)
+            if ((words[i >> 6] & (1L << i)) != 0) assertEquals(0, distances[i]);
+        assertArrayEquals(words, new Sprayer(new float[]{0.2f}, 5, true).sprayTile(BlockMask.tileKey(3, 4),
+                distances), "same seed, same output");
+    }
+
+    @Test
+    void sparseRingsDrawIndependently() {
+        // two rings of the same size and chance, every other block
+        short[] distances = new short[128 * 128];
+        for (int i = 0; i < distances.length; i++)
+            distances[i] = (short) (i % 2);
+        long[] words = new Sprayer(new float[]{0.1f, 0.1f}, 11, true).sprayTile(BlockMask.tileKey(-2, 7), distances);
+        int[][] gaps = new int[2][distances.length / 2];
+        int[] counts = new int[2], last = {-1, -1};
+        for (int i = 0; i < distances.length; i++)
+            if ((words[i >> 6] & (1L << i)) != 0) {
+                int d = i % 2, rank = i / 2;
+                gaps[d][counts[d]++] = rank - last[d];
+                last[d] = rank;
+            }
+        // a stream that is the other one a draw later would repeat its gaps
+        int same = 0;
+        for (int i = 0; i < 50; i++)
+            if (gaps[1][i] == gaps[0][i + 1]) same++;
+        assertTrue(same < 25, same + " of 50 gaps repeat");
+    }
+}
@@ -0,0 +1,37 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockMaskTest {
+
+    @Test
+    void addContainsRemove() {
+        BlockMask mask = new BlockMask();
+        int[][] blocks = {{0, 0}, {-1, -1}, {127, 127}, {128, 0}, {-129, 64}, {63, 5}, {64, 5}, {100000, -100000}};
+        for (int[] b : blocks)
+            assertTrue(mask.add(b[0], b[1]));
+        assertFalse(mask.add(0, 0));
+        assertEquals(blocks.length, mask.size());
+        for (int[] b : blocks)
+            assertTrue(mask.contains(b[0], b[1]));
+        assertFalse(mask.contains(1, 0));
+        assertFalse(mask.contains(-2, -1));
+
+        Set<Point> visited = new HashSet<>();
+        mask.forEach((x, y) -> visited.add(new Point(x, y)));
+        assertEquals(blocks.length, visited.size());
+        for (int[] b : blocks)
+            assertTrue(visited.contains(new Point(b[0], b[1])));
+
+        assertTrue(mask.remove(-129, 64));
+        assertFalse(mask.remove(-129, 64));
+        assertFalse(mask.contains(-129, 64));
+        assertEquals(blocks.length - 1, mask.size());
+    }
+}
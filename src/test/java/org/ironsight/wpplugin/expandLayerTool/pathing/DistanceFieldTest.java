@@ -0,0 +1,132 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.DistanceTransformTest.blob;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceFieldTest {
+
+    @Test
+    void fieldHoldsRingIndex() {
+        BlockMask input = blob(3);
+        DistanceField field = new DistanceField(new RingFinder(input, new BlockMask()), 12);
+        assertEquals(12, field.getRings());
+        new RingFinder(input, new BlockMask()).forEachRing(12, (i, ring) -> ring.forEach((x, y) -> assertEquals(i,
+                field.getDistance(x, y))));
+        assertEquals(DistanceField.UNREACHED, field.getDistance(100000, 100000));
+    }
+
+    @Test
+    void offHeapFieldMatchesHeapField() throws IOException {
+        // a line of seeds across many tiles, so more pages than stay resident
+        BlockMask input = new BlockMask();
+        for (int x = 0; x < 128 * (DistanceField.RESIDENT_PAGES + 10); x += 3)
+            input.add(x, 0);
+        for (int rings : new int[]{20, 300}) {   // byte and short pages
+            DistanceField heap = new DistanceField(new DilationRingFinder(input, new BlockMask()), rings);
+            try (DistanceField offHeap = DistanceField.offHeap(new DilationRingFinder(input, new BlockMask()),
+                    rings)) {
+                assertTrue(offHeap.isOffHeap());
+                assertTrue(offHeap.offHeapBytes() > 0);
+                assertEquals(heap.tileKeys(), offHeap.tileKeys());
+                for (int pass = 0; pass < 2; pass++)
+                    for (long key : heap.tileKeys())
+                        assertArrayEquals(heap.tileDistances(key), offHeap.tileDistances(key));
+                // a single pass decodes into the buffer, without evicting the resident pages
+                short[] buffer = new short[128 * 128];
+                int decoded = 0;
+                for (long key : heap.tileKeys()) {
+                    short[] distances = offHeap.tileDistances(key, buffer);
+                    assertArrayEquals(heap.tileDistances(key), distances);
+                    if (distances == buffer) decoded++;
+                }
+                assertEquals(heap.tileKeys().size() - DistanceField.RESIDENT_PAGES, decoded);
+                assertEquals(heap.getDistance(5, 250), offHeap.getDistance(5, 250));
+                assertEquals(DistanceField.UNREACHED, offHeap.getDistance(-1000, -1000));
+                assertTrue(offHeap.estimatedBytes() < heap.estimatedBytes());
+            }
+        }
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsed() {
+        BlockMask a = blob(4), b = blob(5);
+        DistanceField fieldA = new DistanceField(new DilationRingFinder(a, new BlockMask()), 5);
+        DistanceField fieldB = new DistanceField(new DilationRingFinder(b, new BlockMask()), 5);
+        DistanceFieldCache cache = new DistanceFieldCache(fieldA.estimatedBytes() + fieldB.estimatedBytes() - 1);
+        assertTrue(cache.put(a.fingerprint(), fieldA));
+        cache.release(fieldA);
+        assertSame(fieldA, cache.acquire(a.fingerprint(), 5));
+        assertSame(fieldA, cache.acquire(a.fingerprint(), 3));
+        assertNull(cache.acquire(a.fingerprint(), 6), "too few rings");
+        cache.release(fieldA);
+        cache.release(fieldA);
+        assertThrows(IllegalStateException.class, () -> cache.release(fieldA));
+
+        cache.put(b.fingerprint(), fieldB);
+        assertNull(cache.acquire(a.fingerprint(), 1), "over budget, oldest entry is dropped");
+        assertSame(fieldB, cache.acquire(b.fingerprint(), 5));
+        assertTrue(cache.getUsedBytes() <= fieldA.estimatedBytes() + fieldB.estimatedBytes() - 1);
+    }
+
+    private static DistanceField counted(BlockMask seeds, Set<DistanceField> closed) {
+        return new DistanceField(new DilationRingFinder(seeds, new BlockMask()), 5) {
+            @Override
+            public void close() {
+                assertTrue(closed.add(this), "closed twice");
+            }
+        };
+    }
+
+    @Test
+    void cacheClosesDroppedFieldsOnlyOnceReleased() {
+        Set<DistanceField> closed = new HashSet<>();
+        BlockMask a = blob(4), b = blob(5);
+        DistanceField fieldA = counted(a, closed), fieldB = counted(b, closed);
+        DistanceFieldCache cache = new DistanceFieldCache(Math.max(fieldA.estimatedBytes(), fieldB.estimatedBytes()));
+        cache.put(a.fingerprint(), fieldA);
+        assertSame(fieldA, cache.acquire(a.fingerprint(), 5));
+        // dropped while two runs use it
+        cache.put(b.fingerprint(), fieldB);
+        assertNull(cache.acquire(a.fingerprint(), 5));
+        cache.release(fieldA);
+        assertFalse(closed.contains(fieldA));
+        cache.release(fieldA);
+        assertTrue(closed.contains(fieldA));
+
+        // cleared while in use
+        cache.clear();
+        assertFalse(closed.contains(fieldB));
+        cache.release(fieldB);
+        assertTrue(closed.contains(fieldB));
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    void closedOffHeapFieldCanNotBeRead() throws IOException {
+        BlockMask input = blob(6);
+        DistanceField offHeap = DistanceField.offHeap(new DilationRingFinder(input, new BlockMask()), 8);
+        long key = offHeap.tileKeys().iterator().next();
+        assertNotNull(offHeap.tileDistances(key));
+        offHeap.close();
+        assertTrue(offHeap.isClosed());
+        assertThrows(IllegalStateException.class, () -> offHeap.tileDistances(key));
+    }
+
+    @Test
+    void fingerprintOnlyDependsOnBlocks() {
+        BlockMask a = new BlockMask(), b = new BlockMask();
+        a.add(1, 2);
+        a.add(500, -300);
+        b.add(500, -300);
+        b.add(1, 2);
+        assertEquals(a.fingerprint(), b.fingerprint());
+        b.add(2, 2);
+        assertNotEquals(a.fingerprint(), b.fingerprint());
+    }
+}
@@ -0,0 +1,75 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceTransformTest {
+    static BlockMask blob(long seed) {
+        Random r = new Random(seed);
+        BlockMask points = new BlockMask();
+        for (int i = 0; i < 6; i++) {
+            int cx = r.nextInt(160) - 20, cy = r.nextInt(160) - 20, radius = 3 + r.nextInt(10);
+            for (int x = -radius; x <= radius; x++)
+                for (int y = -radius; y <= radius; y++)
+                    if (x * x + y * y <= radius * radius) points.add(cx + x, cy + y);
+        }
+        return points;
+    }
+
+    static Set<Point> points(BlockMask mask) {
+        Set<Point> points = new HashSet<>();
+        mask.forEach((x, y) -> points.add(new Point(x, y)));
+        return points;
+    }
+
+    @Test
+    void matchesRingFinderWithoutRestriction() {
+        BlockMask seeds = blob(1);
+        RingFinder finder = new RingFinder(seeds, 15);
+        DistanceTransform field = new DistanceTransform(seeds, new BlockMask(), 14);
+        for (int i = 0; i < 15; i++) {
+            assertEquals(points(finder.ring(i)), points(field.ring(i)), "ring " + i);
+        }
+    }
+
+    @Test
+    void matchesRingFinderOutwardAndInward() {
+        for (long seed = 2; seed < 6; seed++) {
+            BlockMask input = blob(seed);
+            RingFinder start = new RingFinder(input, 3);
+
+            // outward: start at the outer border, the input itself is forbidden
+            RingFinder outward = new RingFinder(start.ring(1), 12, input);
+            DistanceTransform outField = new DistanceTransform(start.ring(1), input, 11);
+            for (int i = 0; i < 12; i++) {
+                assertEquals(points(outward.ring(i)), points(outField.ring(i)), "outward ring " + i);
+            }
+
+            // inward: start at the inner border, the outer border is forbidden
+            RingFinder step = new RingFinder(start.ring(1), 1, start.ring(2));
+            RingFinder inward = new RingFinder(step.ring(1), 12, start.ring(1));
+            DistanceTransform inField = new DistanceTransform(step.ring(1), start.ring(1), 11);
+            for (int i = 0; i < 12; i++) {
+                assertEquals(points(inward.ring(i)), points(inField.ring(i)), "inward ring " + i);
+            }
+        }
+    }
+
+    @Test
+    void getDistance() {
+        BlockMask seeds = new BlockMask();
+        seeds.add(10, 10);
+        DistanceTransform field = new DistanceTransform(seeds, new BlockMask(), 5);
+        assertEquals(0, field.getDistance(10, 10));
+        assertEquals(3, field.getDistance(13, 8));
+        assertEquals(5, field.getDistance(5, 15));
+        assertEquals(Integer.MAX_VALUE, field.getDistance(16, 10));
+        assertTrue(new DistanceTransform(new BlockMask(), new BlockMask(), 5).ring(2).isEmpty());
+    }
+}
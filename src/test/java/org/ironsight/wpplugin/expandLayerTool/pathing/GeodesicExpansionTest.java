@@ -0,0 +1,141 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.DistanceTransformTest.blob;
+import static org.ironsight.wpplugin.expandLayerTool.pathing.DistanceTransformTest.points;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeodesicExpansionTest {
+    private static final int SIZE = 256;
+
+    private static List<BlockMask> rings(RingExpansion expansion, int amountRings) {
+        List<BlockMask> rings = new ArrayList<>();
+        expansion.forEachRing(amountRings, (i, ring) -> {
+            assertEquals(rings.size(), i);
+            BlockMask copy = new BlockMask();
+            ring.forEach(copy::add);
+            rings.add(copy);
+        });
+        while (rings.size() < amountRings)
+            rings.add(new BlockMask());
+        return rings;
+    }
+
+    /**
+     * the 256x256 default heightmap as the four tiles around the origin, nothing outside of it
+     */
+    private static TerrainCost.Heights heightmap() throws IOException {
+        File file = new File(System.getProperty("fixtures.dir", "."), "default_heightmap.txt");
+        HashMap<Long, float[]> tiles = new HashMap<>();
+        int y = 0;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) continue;
+            String[] cells = line.split(",");
+            for (int x = 0; x < SIZE; x++)
+                tiles.computeIfAbsent(BlockMask.tileKey(x >> 7, y >> 7), k -> new float[128 * 128])[(y & 127) * 128 +
+                        (x & 127)] = Float.parseFloat(cells[x].trim());
+            y++;
+        }
+        assertEquals(SIZE, y);
+        return tiles::get;
+    }
+
+    @Test
+    void flatGroundGivesTheSameRings() {
+        float[] flat = new float[128 * 128];
+        TerrainCost cost = new TerrainCost(key -> flat, 1, 3);
+        BlockMask seeds = blob(7), restriction = blob(8);
+        for (long key : seeds.tileKeys())
+            restriction.removeTile(key);
+        List<BlockMask> expected = rings(new DilationRingFinder(seeds, restriction), 30);
+        List<BlockMask> actual = rings(new GeodesicExpansion(seeds, restriction, cost), 30);
+        for (int i = 0; i < 30; i++)
+            assertEquals(points(expected.get(i)), points(actual.get(i)), "ring " + i);
+    }
+
+    @Test
+    void matchesDijkstraOnTheHeightmap() throws IOException {
+        TerrainCost cost = new TerrainCost(heightmap(), 2, 0.5f);
+        BlockMask seeds = new BlockMask();
+        for (int x = 40; x < 60; x++)
+            seeds.add(x, 128);
+        seeds.add(200, 30);
+        final int amountRings = 60;
+
+        // reference: plain dijkstra with a heap over the whole map
+        int[] best = new int[SIZE * SIZE];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+        seeds.forEach((x, y) -> {
+            best[y * SIZE + x] = 0;
+            queue.add(new int[]{0, x, y});
+        });
+        while (!queue.isEmpty()) {
+            int[] open = queue.poll();
+            if (open[0] != best[open[2] * SIZE + open[1]]) continue;
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++) {
+                    int nx = open[1] + dx, ny = open[2] + dy;
+                    if ((dx == 0 && dy == 0) || nx < 0 || ny < 0 || nx >= SIZE || ny >= SIZE) continue;
+                    int step = cost.step(height(cost, open[1], open[2]), height(cost, nx, ny));
+                    if (step == TerrainCost.IMPASSABLE || open[0] + step >= best[ny * SIZE + nx]) continue;
+                    best[ny * SIZE + nx] = open[0] + step;
+                    queue.add(new int[]{open[0] + step, nx, ny});
+                }
+        }
+
+        List<BlockMask> single = rings(new GeodesicExpansion(seeds, new BlockMask(), cost), amountRings);
+        List<BlockMask> sharded = rings(new ShardedExpansion(seeds, new BlockMask(),
+                GeodesicExpansion.engine(cost), ForkJoinPool.commonPool(), 1), amountRings);
+        int reached = 0, cliffs = 0;
+        for (int i = 0; i < amountRings; i++) {
+            BlockMask expected = new BlockMask();
+            for (int b = 0; b < best.length; b++)
+                if (best[b] != Integer.MAX_VALUE && (best[b] + TerrainCost.FLAT - 1) / TerrainCost.FLAT == i)
+                    expected.add(b % SIZE, b / SIZE);
+            assertEquals(points(expected), points(single.get(i)), "ring " + i);
+            assertEquals(points(expected), points(sharded.get(i)), "sharded ring " + i);
+            reached += expected.size();
+        }
+        for (int b = 0; b < best.length; b++)
+            if (best[b] == Integer.MAX_VALUE && Math.abs(b % SIZE - 50) + Math.abs(b / SIZE - 128) < 20) cliffs++;
+        assertTrue(reached > 1000);
+        assertTrue(cliffs > 0, "some blocks close to the seeds are behind cliffs");
+    }
+
+    private static float height(TerrainCost cost, int x, int y) {
+        return cost.tile(BlockMask.tileKey(x >> 7, y >> 7))[(y & 127) * 128 + (x & 127)];
+    }
+
+    @Test
+    void spreadsFurtherDownhill() {
+        // a slope that falls towards +x
+        float[] slope = new float[128 * 128];
+        for (int i = 0; i < slope.length; i++)
+            slope[i] = -0.5f * (i & 127);
+        TerrainCost cost = new TerrainCost(key -> BlockMask.tileY(key) == 0 && BlockMask.tileX(key) == 0 ? slope :
+                null, 1, 3);
+        BlockMask seeds = new BlockMask();
+        seeds.add(64, 64);
+        List<BlockMask> rings = rings(new GeodesicExpansion(seeds, new BlockMask(), cost), 20);
+        int[] extent = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+        rings.get(19).forEach((x, y) -> {
+            extent[0] = Math.min(extent[0], x);
+            extent[1] = Math.max(extent[1], x);
+        });
+        assertTrue(extent[1] - 64 > 64 - extent[0], "downhill " + (extent[1] - 64) + ", uphill " + (64 - extent[0]));
+        assertTrue(64 - extent[0] < 19, "climbing costs more than a ring per block");
+    }
+}
@@ -0,0 +1,40 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTileStoreTest {
+    @Test
+    void pagesRoundTrip() throws IOException {
+        try (MappedTileStore store = new MappedTileStore(BlockMask.WORDS_PER_TILE * 8, 1 << 20)) {
+            long[] words = new long[BlockMask.WORDS_PER_TILE];
+            for (int t = 0; t < 5000; t++) {   // more than one segment
+                Arrays.fill(words, t * 31L);
+                store.putWords(BlockMask.tileKey(t, -t), words);
+            }
+            assertEquals(5000, store.size());
+            assertTrue(store.fileBytes() > (1 << 20));
+            for (int t = 0; t < 5000; t += 499) {
+                long[] read = store.getWords(BlockMask.tileKey(t, -t), BlockMask.WORDS_PER_TILE);
+                assertEquals(t * 31L, read[0]);
+                assertEquals(t * 31L, read[read.length - 1]);
+            }
+            assertNull(store.getWords(BlockMask.tileKey(-1, 1), BlockMask.WORDS_PER_TILE));
+            assertEquals(BlockMask.tileKey(0, 0), (long) store.tileKeys().get(0), "creation order");
+        }
+    }
+
+    @Test
+    void newPagesAreZero() throws IOException {
+        try (MappedTileStore store = new MappedTileStore(64)) {
+            assertEquals(0, store.page(BlockMask.tileKey(3, 3)).getLong(56));
+            store.page(BlockMask.tileKey(3, 3)).putLong(8, 42);
+            assertEquals(42, store.page(BlockMask.tileKey(3, 3)).getLong(8));
+            assertEquals(0, store.page(BlockMask.tileKey(4, 3)).getLong(8));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PyramidDistanceFieldTest {
+    private static DistanceField signed(BlockMask mask, int rings) throws IOException {
+        return DistanceField.signed(mask, new DilationRingFinder(DilationRingFinder.border(mask), new BlockMask()),
+                rings, false);
+    }
+
+    @Test
+    void exactNearTheEdgeCloseFurtherOut() throws IOException {
+        // a disc with a hole, a lone block that no chunk is full of and a thin line
+        BlockMask mask = new BlockMask();
+        for (int x = -200; x <= 200; x++)
+            for (int y = -200; y <= 200; y++)
+                if (x * x + y * y <= 200 * 200 && (Math.abs(x - 30) > 40 || Math.abs(y) > 40)) mask.add(x, y);
+        mask.add(450, 30);
+        for (int y = -300; y < 0; y++)
+            mask.add(-350, y);
+
+        final int width = 260;
+        BlockMask[] chunks = PyramidDistanceField.chunkMasks(mask);
+        int coarseRings = PyramidDistanceField.coarseRings(width);
+        DistanceField exact = signed(mask, width);
+        DistanceField pyramid = new PyramidDistanceField(mask, width, signed(mask, PyramidDistanceField.NEAR_RINGS),
+                signed(chunks[0], coarseRings), signed(chunks[1], coarseRings));
+        assertTrue(pyramid.isSigned());
+        assertEquals(width, pyramid.getRings());
+        assertTrue(pyramid.tileKeys().containsAll(exact.tileKeys()));
+
+        int far = 0;
+        for (long key : exact.tileKeys()) {
+            short[] expected = exact.tileDistances(key), actual = pyramid.tileDistances(key);
+            for (int i = 0; i < expected.length; i++) {
+                int e = expected[i], a = actual[i];
+                assertEquals(e < 0, a < 0, "same side of the edge");
+                if (Math.abs(e) <= PyramidDistanceField.NEAR_RINGS) {
+                    assertEquals(e, a);
+                } else if (Math.abs(a) == DistanceField.UNREACHED) {
+                    assertTrue(Math.abs(e) > width - PyramidDistanceField.SLACK, e + " should be reached");
+                } else if (Math.abs(e) == DistanceField.UNREACHED) {
+                    assertTrue(Math.abs(a) > width - PyramidDistanceField.SLACK, a + " should be unreached");
+                } else {
+                    assertTrue(Math.abs(e - a) <= PyramidDistanceField.SLACK, e + " estimated as " + a);
+                    assertTrue(Math.abs(a) > PyramidDistanceField.NEAR_RINGS);
+                    far++;
+                }
+            }
+        }
+        assertTrue(far > 0);
+        // asking twice gives the same tile
+        long key = BlockMask.tileKey(2, 0);
+        assertArrayEquals(pyramid.tileDistances(key).clone(), pyramid.tileDistances(key));
+        assertNull(pyramid.tileDistances(BlockMask.tileKey(100, 100)));
+    }
+
+    @Test
+    void farFieldStaysWithinSlackOfDistanceTransform() throws IOException {
+        BlockMask mask = new BlockMask();
+        for (int x = -150; x <= 150; x++)
+            for (int y = -150; y <= 150; y++)
+                if (x * x + y * y <= 150 * 150 && x * x + y * y > 60 * 60) mask.add(x, y);
+        for (int x = 300; x < 420; x++)
+            mask.add(x, 3 * x / 4 - 260);
+        mask.add(-400, 250);
+
+        final int width = 300;
+        BlockMask[] chunks = PyramidDistanceField.chunkMasks(mask);
+        int coarseRings = PyramidDistanceField.coarseRings(width);
+        DistanceField pyramid = new PyramidDistanceField(mask, width, signed(mask, PyramidDistanceField.NEAR_RINGS),
+                signed(chunks[0], coarseRings), signed(chunks[1], coarseRings));
+        DistanceTransform exact = new DistanceTransform(mask, new BlockMask(), width);
+        int worst = 0, far = 0;
+        for (long key : pyramid.tileKeys()) {
+            short[] estimated = pyramid.tileDistances(key);
+            int originX = BlockMask.tileX(key) << 7, originY = BlockMask.tileY(key) << 7;
+            for (int i = 0; i < estimated.length; i++) {
+                int a = estimated[i], e = exact.getDistance(originX + (i & 127), originY + (i >> 7));
+                if (a < 0 || e == 0) continue;   // inside, the transform only knows the outside
+                if (e == Integer.MAX_VALUE || a == DistanceField.UNREACHED) {
+                    assertTrue(Math.min(a, e) > width - PyramidDistanceField.SLACK, a + " estimated for " + e);
+                    continue;
+                }
+                if (e <= PyramidDistanceField.NEAR_RINGS) assertEquals(e, a);
+                else far++;
+                worst = Math.max(worst, Math.abs(e - a));
+            }
+        }
+        assertTrue(far > 10000);
+        assertTrue(worst <= PyramidDistanceField.SLACK, "off by " + worst);
+    }
+}
@@ -0,0 +1,82 @@
+package org.ironsight.wpplugin.expandLayerTool.pathing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.ironsight.wpplugin.expandLayerTool.pathing.DistanceTransformTest.blob;
+import static org.ironsight.wpplugin.expandLayerTool.pathing.DistanceTransformTest.points;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingFinderTest {
+
+    @Test
+    void forEachRingMatchesEagerRings() {
+        BlockMask input = blob(7);
+        RingFinder eager = new RingFinder(input, 10, new BlockMask());
+        List<Integer> visited = new ArrayList<>();
+        new RingFinder(input, new BlockMask()).forEachRing(10, (i, ring) -> {
+            visited.add(i);
+            assertEquals(points(eager.ring(i)), points(ring), "ring " + i);
+        });
+        assertEquals(10, visited.size());
+        for (int i = 0; i < visited.size(); i++)
+            assertEquals(i, visited.get(i));
+    }
+
+    @Test
+    void allEnginesMatchRingFinder() {
+        for (long seed = 10; seed < 14; seed++) {
+            BlockMask input = blob(seed);
+            RingFinder start = new RingFinder(input, 3);
+            BlockMask[][] setups = {{input, new BlockMask()}, {start.ring(1), input},
+                    {new RingFinder(start.ring(1), 1, start.ring(2)).ring(1), start.ring(1)}};
+            for (BlockMask[] setup : setups) {
+                List<BlockMask> expected = new ArrayList<>();
+                new RingFinder(setup[0], setup[1]).forEachRing(20, (i, ring) -> expected.add(ring));
+                for (RingExpansion.Engine engine : RingExpansion.Engine.values()) {
+                    List<Integer> visited = new ArrayList<>();
+                    engine.create(setup[0], setup[1], 20).forEachRing(20, (i, ring) -> {
+                        visited.add(i);
+                        assertEquals(points(expected.get(i)), points(ring), engine + " ring " + i);
+                    });
+                    assertEquals(20, visited.size(), engine.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void shardedExpansionMatchesSerial() {
+        BlockMask input = blob(20);
+        RingFinder start = new RingFinder(input, 3);
+        BlockMask[][] setups = {{input, new BlockMask()}, {start.ring(1), input}};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (BlockMask[] setup : setups) {
+            List<BlockMask> expected = new ArrayList<>();
+            new RingFinder(setup[0], setup[1]).forEachRing(30, (i, ring) -> expected.add(ring));
+            // shards of a single tile, so the blobs cross many shard borders
+            for (RingExpansion.Engine engine : RingExpansion.Engine.values()) {
+                new ShardedExpansion(setup[0], setup[1], engine, pool, 1).forEachRing(30,
+                        (i, ring) -> assertEquals(points(expected.get(i)), points(ring), engine + " ring " + i));
+                // the parts of a ring do not overlap and add up to the ring
+                BlockMask[] parts = new BlockMask[30];
+                new ShardedExpansion(setup[0], setup[1], engine, pool, 1).forEachRingPart(30, (i, part) -> {
+                    synchronized (parts) {
+                        if (parts[i] == null) parts[i] = new BlockMask();
+                        for (long key : part.tileKeys()) {
+                            assertNull(parts[i].tileWords(key), "tile in two parts");
+                            parts[i].putTile(key, part.tileWords(key));
+                        }
+                    }
+                });
+                for (int i = 0; i < 30; i++)
+                    assertEquals(points(expected.get(i)), parts[i] == null ? new HashSet<>() : points(parts[i]),
+                            engine + " ring " + i);
+            }
+        }
+    }
+}